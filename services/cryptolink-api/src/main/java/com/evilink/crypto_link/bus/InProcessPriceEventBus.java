@@ -0,0 +1,48 @@
+package com.evilink.crypto_link.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/** Una sola réplica: siempre líder y los ticks se entregan en el mismo hilo que publica */
+@Component
+@ConditionalOnProperty(name = "cryptolink.bus.type", havingValue = "local", matchIfMissing = true)
+public class InProcessPriceEventBus implements PriceEventBus {
+
+  private static final Logger log = LoggerFactory.getLogger(InProcessPriceEventBus.class);
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final List<Consumer<PriceTick>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public String instanceId() {
+    return instanceId;
+  }
+
+  @Override
+  public void publish(PriceTick tick) {
+    for (Consumer<PriceTick> l : listeners) {
+      try {
+        l.accept(tick);
+      } catch (Exception e) {
+        log.warn("Price tick listener failed msg={}", e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<PriceTick> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public boolean isLeader() {
+    return true;
+  }
+}
@@ -0,0 +1,312 @@
+package com.evilink.crypto_link.bus;
+
+import com.evilink.crypto_link.service.PriceTable;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus entre réplicas sobre Postgres:
+ * - NOTIFY/LISTEN para los ticks (payload JSON, partido en varios ticks si pasa del límite).
+ * - pg_try_advisory_lock para elegir un solo líder que consulta upstream.
+ *
+ * Ocupa dos conexiones del pool de forma permanente: una escuchando y otra (solo el líder)
+ * sosteniendo el advisory lock, que es de sesión y se suelta solo si esa conexión muere.
+ */
+@Component
+@ConditionalOnProperty(name = "cryptolink.bus.type", havingValue = "postgres")
+public class PostgresPriceEventBus implements PriceEventBus {
+
+  private static final Logger log = LoggerFactory.getLogger(PostgresPriceEventBus.class);
+
+  // NOTIFY acepta < 8000 bytes; margen para el sobre del tick
+  private static final int MAX_PAYLOAD_BYTES = 7500;
+
+  private final DataSource dataSource;
+  private final JdbcTemplate jdbc;
+  private final String channel;
+  private final long leaderLockKey;
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final List<Consumer<PriceTick>> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile boolean running = true;
+  private volatile boolean leader;
+  private Connection lockConn;           // solo lo toca electLeader (scheduler, un hilo)
+  private final Thread listenThread;
+
+  public PostgresPriceEventBus(DataSource dataSource,
+                               JdbcTemplate jdbc,
+                               @Value("${cryptolink.bus.channel:cryptolink_prices}") String channel,
+                               @Value("${cryptolink.bus.leader-lock-key:7318001}") long leaderLockKey) {
+    if (!channel.matches("[a-z_][a-z0-9_]*")) {
+      // va pegado en LISTEN, que no acepta parámetros
+      throw new IllegalArgumentException("Invalid cryptolink.bus.channel: " + channel);
+    }
+    this.dataSource = dataSource;
+    this.jdbc = jdbc;
+    this.channel = channel;
+    this.leaderLockKey = leaderLockKey;
+
+    this.listenThread = new Thread(this::listenLoop, "price-bus-listen");
+    this.listenThread.setDaemon(true);
+    this.listenThread.start();
+  }
+
+  @Override
+  public String instanceId() {
+    return instanceId;
+  }
+
+  @Override
+  public boolean isLeader() {
+    return leader;
+  }
+
+  @Override
+  public void subscribe(Consumer<PriceTick> listener) {
+    listeners.add(listener);
+  }
+
+  /** La entrega (incluida la propia) llega por LISTEN, no en este hilo */
+  @Override
+  public void publish(PriceTick tick) {
+    for (String payload : encode(tick)) {
+      try {
+        jdbc.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel, payload);
+      } catch (Exception e) {
+        log.warn("Price bus publish failed channel={} msg={}", channel, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Un JSON por tick; si no cabe en un NOTIFY se parte en ticks más chicos (cada uno válido).
+   * Se escribe directo desde la tabla: {"prices":{"FIAT":{"SYM":123.45}}} sin Maps ni BigDecimal.
+   */
+  List<String> encode(PriceTick tick) {
+    PriceTable table = tick.prices();
+    int[] fiatIdx = new int[table.fiatCount() * table.symbolCount()];
+    int[] ordinals = new int[fiatIdx.length];
+    int cells = 0;
+    for (int f = 0; f < table.fiatCount(); f++) {
+      for (int ord = 0; ord < table.symbolCount(); ord++) {
+        if (!Double.isFinite(table.get(f, ord))) continue;
+        fiatIdx[cells] = f;
+        ordinals[cells] = ord;
+        cells++;
+      }
+    }
+
+    String whole = write(tick, fiatIdx, ordinals, 0, cells);
+    if (whole.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES) return List.of(whole);
+
+    int envelope = write(tick, fiatIdx, ordinals, 0, 0).getBytes(StandardCharsets.UTF_8).length;
+
+    List<String> out = new ArrayList<>();
+    int from = 0;
+    int size = envelope;
+    for (int i = 0; i < cells; i++) {
+      // "FIAT":{...}, "SYM":123.45, (estimación holgada)
+      int entry = table.fiat(fiatIdx[i]).length() + table.symbol(ordinals[i]).length()
+        + Double.toString(table.get(fiatIdx[i], ordinals[i])).length() + 12;
+      if (size + entry > MAX_PAYLOAD_BYTES && i > from) {
+        out.add(write(tick, fiatIdx, ordinals, from, i));
+        from = i;
+        size = envelope;
+      }
+      size += entry;
+    }
+    if (cells > from) out.add(write(tick, fiatIdx, ordinals, from, cells));
+    return out;
+  }
+
+  /** Sobre del tick + las celdas [from, to) agrupadas por fiat */
+  private static String write(PriceTick tick, int[] fiatIdx, int[] ordinals, int from, int to) {
+    PriceTable table = tick.prices();
+    StringWriter buf = new StringWriter();
+    try (JsonWriter w = new JsonWriter(buf)) {
+      w.beginObject();
+      w.name("origin").value(tick.origin());
+      w.name("source").value(tick.source());
+      w.name("observedAtEpochMs").value(tick.observedAtEpochMs());
+      w.name("ttlMs").value(tick.ttlMs());
+      w.name("prices").beginObject();
+      int open = -1;
+      for (int i = from; i < to; i++) {
+        if (fiatIdx[i] != open) {
+          if (open >= 0) w.endObject();
+          open = fiatIdx[i];
+          w.name(table.fiat(open)).beginObject();
+        }
+        w.name(table.symbol(ordinals[i])).value(table.get(fiatIdx[i], ordinals[i]));
+      }
+      if (open >= 0) w.endObject();
+      w.endObject();
+      w.endObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);   // StringWriter no falla
+    }
+    return buf.toString();
+  }
+
+  /** Inverso de encode: la tabla trae solo los símbolos que vienen en el payload */
+  static PriceTick decode(String payload) {
+    JsonObject o = JsonParser.parseString(payload).getAsJsonObject();
+    JsonObject prices = o.getAsJsonObject("prices");
+    if (prices == null) return null;
+
+    List<String> fiats = new ArrayList<>(prices.keySet());
+    Map<String, Integer> ordinals = new LinkedHashMap<>();
+    for (String fiat : fiats) {
+      for (String sym : prices.getAsJsonObject(fiat).keySet()) ordinals.putIfAbsent(sym, ordinals.size());
+    }
+
+    PriceTable table = new PriceTable(fiats, ordinals.keySet().toArray(String[]::new));
+    for (int f = 0; f < fiats.size(); f++) {
+      for (var p : prices.getAsJsonObject(fiats.get(f)).entrySet()) {
+        table.set(f, ordinals.get(p.getKey()), p.getValue().getAsDouble());
+      }
+    }
+    return new PriceTick(o.get("origin").getAsString(), o.get("source").getAsString(),
+      o.get("observedAtEpochMs").getAsLong(), o.get("ttlMs").getAsLong(), table);
+  }
+
+  private void listenLoop() {
+    while (running) {
+      try (Connection conn = dataSource.getConnection()) {
+        try (Statement st = conn.createStatement()) {
+          st.execute("LISTEN " + channel);
+        }
+        PGConnection pg = conn.unwrap(PGConnection.class);
+        log.info("Price bus listening channel={} instanceId={}", channel, instanceId);
+
+        while (running) {
+          PGNotification[] notifications = pg.getNotifications(1000);
+          if (notifications == null) continue;
+          for (PGNotification n : notifications) dispatch(n.getParameter());
+        }
+      } catch (SQLException e) {
+        if (!running) return;
+        log.warn("Price bus listener lost connection, retrying msg={}", e.getMessage());
+        sleepQuietly(2000);
+      }
+    }
+  }
+
+  private void dispatch(String payload) {
+    PriceTick tick;
+    try {
+      tick = decode(payload);
+    } catch (RuntimeException e) {
+      // JSON roto o campos faltantes / de otro tipo
+      log.warn("Price bus dropped malformed payload msg={}", e.getMessage());
+      return;
+    }
+    if (tick == null) return;
+
+    for (Consumer<PriceTick> l : listeners) {
+      try {
+        l.accept(tick);
+      } catch (Exception e) {
+        log.warn("Price tick listener failed msg={}", e.getMessage());
+      }
+    }
+  }
+
+  /** Toma (o confirma) el advisory lock; si la conexión que lo sostiene muere, otra réplica lo gana */
+  @Scheduled(fixedDelayString = "${cryptolink.bus.leader-check-ms:5000}")
+  public void electLeader() {
+    try {
+      if (lockConn != null) {
+        if (lockConn.isValid(2)) return;
+        log.warn("Price bus lost leader connection instanceId={}", instanceId);
+        closeQuietly(lockConn);
+        lockConn = null;
+        leader = false;
+      }
+
+      Connection conn = dataSource.getConnection();
+      boolean acquired;
+      try (PreparedStatement ps = conn.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+        ps.setLong(1, leaderLockKey);
+        try (ResultSet rs = ps.executeQuery()) {
+          acquired = rs.next() && rs.getBoolean(1);
+        }
+      }
+
+      if (acquired) {
+        lockConn = conn;
+        leader = true;
+        log.info("Price bus leader acquired instanceId={}", instanceId);
+      } else {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      leader = false;
+      log.warn("Price bus leader election failed msg={}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    listenThread.interrupt();
+
+    leader = false;
+    if (lockConn != null) {
+      try (PreparedStatement ps = lockConn.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+        ps.setLong(1, leaderLockKey);
+        ps.execute();
+      } catch (SQLException ignored) {
+        // al cerrar la sesión Postgres lo suelta igual
+      }
+      closeQuietly(lockConn);
+      lockConn = null;
+    }
+  }
+
+  private static void closeQuietly(Connection c) {
+    try {
+      c.close();
+    } catch (SQLException ignored) {
+      // nada
+    }
+  }
+
+  private static void sleepQuietly(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.evilink.crypto_link.bus;
+
+import java.util.function.Consumer;
+
+/**
+ * Reparte ticks de precio entre réplicas. Solo el líder consulta upstream (poller/ingesta);
+ * cada réplica recibe los ticks (incluidos los propios) y los reparte a sus clientes.
+ *
+ * cryptolink.bus.type=local (default) o postgres (LISTEN/NOTIFY + advisory lock).
+ */
+public interface PriceEventBus {
+
+  /** Id único de esta réplica (para reconocer los ticks propios) */
+  String instanceId();
+
+  void publish(PriceTick tick);
+
+  /** Los listeners pueden correr en otro hilo; no deben bloquear */
+  void subscribe(Consumer<PriceTick> listener);
+
+  /** true si esta réplica es la que debe pegarle a upstream en el poller/ingesta */
+  boolean isLeader();
+}
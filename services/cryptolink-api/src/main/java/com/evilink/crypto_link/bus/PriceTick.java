@@ -0,0 +1,19 @@
+package com.evilink.crypto_link.bus;
+
+import com.evilink.crypto_link.service.PriceTable;
+
+/**
+ * Observación fresca de upstream que viaja por el bus.
+ *
+ * @param origin            instanceId de la réplica que consultó upstream
+ * @param source            proveedor que respondió (coingecko, ...)
+ * @param observedAtEpochMs cuándo llegó la respuesta
+ * @param ttlMs             cuánto la consideró fresca quien la publicó
+ * @param prices            fiat × símbolo en la misma tabla primitiva que llenó el proveedor (no modificar)
+ */
+public record PriceTick(String origin,
+                        String source,
+                        long observedAtEpochMs,
+                        long ttlMs,
+                        PriceTable prices) {
+}
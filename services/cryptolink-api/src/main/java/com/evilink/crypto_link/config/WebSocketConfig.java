@@ -0,0 +1,31 @@
+package com.evilink.crypto_link.config;
+
+import com.evilink.crypto_link.ws.ApiKeyHandshakeInterceptor;
+import com.evilink.crypto_link.ws.PriceWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+  private final PriceWebSocketHandler priceHandler;
+  private final String[] allowedOrigins;
+
+  public WebSocketConfig(PriceWebSocketHandler priceHandler,
+                         @Value("${cryptolink.ws.allowed-origins:http://localhost:3000}") String[] allowedOrigins) {
+    this.priceHandler = priceHandler;
+    this.allowedOrigins = allowedOrigins;
+  }
+
+  @Override
+  public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+    // auth la hace ApiKeyFilter en el handshake (x-api-key o ?token= como en /v1/stream)
+    registry.addHandler(priceHandler, "/v1/ws/prices")
+        .addInterceptors(new ApiKeyHandshakeInterceptor())
+        .setAllowedOriginPatterns(allowedOrigins);
+  }
+}
@@ -25,8 +25,11 @@ public class PriceSparkController {
     @GetMapping("/prices/spark")
     public ResponseEntity<?> getPriceSpark(
         @RequestParam String symbols,
-        @RequestParam(defaultValue = "USD") String fiat
+        @RequestParam(defaultValue = "USD") String fiat,
+        @RequestParam(required = false) String window
     ) {
+        PriceHistoryCache.Window w = PriceHistoryCache.Window.parse(window);
+
         List<String> list = Arrays.stream(symbols.split(","))
             .map(String::trim)
             .filter(s -> !s.isBlank())
@@ -35,7 +38,7 @@ public class PriceSparkController {
 
         Map<String, Object> out = new LinkedHashMap<>();
         for (String sym : list) {
-            out.put(sym, historyCache.get(fiat, sym));
+            out.put(sym, historyCache.get(fiat, sym, w));
         }
 
         return ResponseEntity.ok()
@@ -45,6 +48,7 @@ public class PriceSparkController {
                 "fiat", fiat.toUpperCase(),
                 "ts", OffsetDateTime.now().toString(),
                 "source", "internal-history",
+                "window", w.label == null ? "raw" : w.label,
                 "series", out
             ));
     }
@@ -35,8 +35,14 @@ public class StreamController {
       - O con token en query param (?token=...)
       Eventos:
       - hello (al conectar)
-      - price (cuando hay precios)
+      - snapshot (solo mode=delta, al conectar: todos los precios conocidos + seq)
+      - price (cuando hay precios; en mode=delta solo los que cambiaron + seq)
       - ping (keepalive)
+      Con format=compact el hello trae dict/scale y los frames usan arreglos posicionales
+      (p = un entero por símbolo de dict, c = pares [i, valor]), t en epoch-ms, q = seq.
+      Un valor que escalado pasaría de 2^53 llega como string decimal sin escalar.
+      Cada price trae id; al reconectar con Last-Event-ID se reenvían los ticks perdidos
+      (o el último si ya no están en memoria).
       """
     )
 
@@ -46,7 +52,10 @@ public class StreamController {
             HttpServletRequest req,
             @Parameter(description = "CSV de simbolos, ej: BTC,ETH") @RequestParam(defaultValue = "BTC,ETH") String symbols,
             @Parameter(description = "Fiat, ej: USD/MXN/EUR") @RequestParam(defaultValue = "USD") String fiat,
-            @Parameter(description = "Token SSE (alternativa a x-api-key)") @RequestParam(required = false) String token
+            @Parameter(description = "Token SSE (alternativa a x-api-key)") @RequestParam(required = false) String token,
+            @Parameter(description = "full (mapa completo cada tick) o delta (solo cambios, con seq)") @RequestParam(defaultValue = "full") String mode,
+            @Parameter(description = "json (default) o compact (arreglos posicionales + enteros escalados)") @RequestParam(defaultValue = "json") String format,
+            @Parameter(description = "Id del último evento recibido (lo manda EventSource al reconectar)") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
     ) throws Exception {
 
         String apiKey = (String) req.getAttribute(ApiKeyFilter.REQ_ATTR_API_KEY);
@@ -63,6 +72,7 @@ public class StreamController {
             );
         }
         var f = validator.normalizeFiat(fiat);
-        return broadcaster.subscribe(apiKey, list, f);
+        return broadcaster.subscribe(apiKey, list, f, PriceBroadcaster.Mode.parse(mode),
+                PriceBroadcaster.Format.parse(format), lastEventId);
     }
 }
@@ -1,6 +1,6 @@
 package com.evilink.crypto_link.controller;
 
-import com.evilink.crypto_link.service.SymbolService;
+import com.evilink.crypto_link.service.SymbolRegistry;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.Map;
@@ -31,9 +31,9 @@ import io.swagger.v3.oas.annotations.media.Content;
 @RestController
 public class SymbolsController {
 
-  private final SymbolService symbols;
+  private final SymbolRegistry symbols;
 
-  public SymbolsController(SymbolService symbols) {
+  public SymbolsController(SymbolRegistry symbols) {
     this.symbols = symbols;
   }
 
@@ -41,8 +41,7 @@ public class SymbolsController {
   @GetMapping("/v1/symbols")
   public Map<String, Object> list() {
 
-    var set = symbols.listActive();
-    var list = set.stream().sorted().toList();
+    var list = symbols.activeSymbols();
 
     return Map.of("ok", true, "symbols", list);
   }
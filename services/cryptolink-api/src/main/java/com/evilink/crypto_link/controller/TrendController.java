@@ -1,5 +1,6 @@
 package com.evilink.crypto_link.controller;
 
+import com.evilink.crypto_link.history.PriceHistoryCache;
 import com.evilink.crypto_link.trends.TrendService;
 import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
@@ -24,15 +25,18 @@ public class TrendController {
     @GetMapping("/trends")
     public ResponseEntity<?> getTrends(
         @RequestParam String symbols,
-        @RequestParam(defaultValue = "USD") String fiat
+        @RequestParam(defaultValue = "USD") String fiat,
+        @RequestParam(required = false) String window
     ) {
+        PriceHistoryCache.Window w = PriceHistoryCache.Window.parse(window);
+
         List<String> list = Arrays.stream(symbols.split(","))
             .map(String::trim)
             .filter(s -> !s.isBlank())
             .map(String::toUpperCase)
             .toList();
 
-        var trends = trendService.getTrends(list, fiat);
+        var trends = trendService.getTrends(list, fiat, w);
 
         return ResponseEntity.ok()
             .cacheControl(CacheControl.maxAge(Duration.ofSeconds(10)).cachePublic())
@@ -41,6 +45,7 @@ public class TrendController {
                 "fiat", fiat.toUpperCase(),
                 "ts", OffsetDateTime.now().toString(),
                 "source", "internal-history",
+                "window", w.label == null ? "raw" : w.label,
                 "trends", trends
             ));
     }
@@ -0,0 +1,11 @@
+package com.evilink.crypto_link.exception;
+
+/** El circuito del proveedor está abierto: ni se intenta la llamada upstream */
+public class CircuitOpenException extends UpstreamException {
+  public final long retryAtEpochMs;
+
+  public CircuitOpenException(String provider, long retryAtEpochMs) {
+    super("Circuit open for provider=" + provider);
+    this.retryAtEpochMs = retryAtEpochMs;
+  }
+}
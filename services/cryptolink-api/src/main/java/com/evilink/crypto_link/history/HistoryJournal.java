@@ -0,0 +1,292 @@
+package com.evilink.crypto_link.history;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Journal local del historial (para despliegues de un solo nodo): append-only sobre
+ * segmentos mapeados en memoria, se reproduce al arrancar sin tocar la DB.
+ *
+ * Registro fijo de 24 bytes: symbolOrd(int) fiatOrd(int) value(double) epochMs(long).
+ * epochMs va al final y 0 = hueco libre, así un registro a medio escribir no se lee.
+ * Los ordinales son propios del journal (dict.txt, una línea "F USD" / "S BTC" por alta)
+ * y no cambian entre versiones del SymbolRegistry.
+ *
+ * Segmentos de segment-bytes; al llenarse se abre el siguiente y se borran los más
+ * viejos por encima de max-segments.
+ *
+ * append() solo encola: un único hilo (history-journal) es dueño del segmento y del dict
+ * y hace todo el I/O (altas con fsync, rotación, force cada force-ms). Si la cola se
+ * llena se descartan puntos, igual que en PriceHistoryPersister.
+ */
+@Component
+@ConditionalOnProperty(name = "cryptolink.history.journal.enabled", havingValue = "true")
+public class HistoryJournal {
+
+  private static final Logger log = LoggerFactory.getLogger(HistoryJournal.class);
+
+  static final int RECORD_BYTES = 24;
+  private static final String SEGMENT_PREFIX = "seg-";
+  private static final String SEGMENT_SUFFIX = ".jnl";
+
+  private final PriceHistoryCache cache;
+  private final Path dir;
+  private final Path dictFile;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final long forceMs;
+
+  private record Point(String fiat, String symbol, long epochMs, double value) {}
+
+  private final BlockingQueue<Point> queue;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread writerThread;
+  private volatile boolean running = true;
+
+  // ordinales y segmento (solo los toca start() y luego el hilo escritor)
+  private final Map<String, Integer> fiatOrd = new HashMap<>();
+  private final Map<String, Integer> symbolOrd = new HashMap<>();
+  private final List<String> fiats = new ArrayList<>();
+  private final List<String> symbols = new ArrayList<>();
+
+  private long segmentNo;
+  private MappedByteBuffer current;
+
+  public HistoryJournal(PriceHistoryCache cache,
+                        @Value("${cryptolink.history.journal.dir:./data/history-journal}") String dir,
+                        @Value("${cryptolink.history.journal.segment-bytes:16777216}") int segmentBytes,
+                        @Value("${cryptolink.history.journal.max-segments:8}") int maxSegments,
+                        @Value("${cryptolink.history.journal.queue-capacity:100000}") int queueCapacity,
+                        @Value("${cryptolink.history.journal.force-ms:5000}") long forceMs) {
+    if (segmentBytes < RECORD_BYTES || maxSegments < 1) {
+      throw new IllegalArgumentException("Invalid cryptolink.history.journal.* sizes");
+    }
+    this.cache = cache;
+    this.dir = Paths.get(dir);
+    this.dictFile = this.dir.resolve("dict.txt");
+    this.segmentBytes = segmentBytes - (segmentBytes % RECORD_BYTES);
+    this.maxSegments = maxSegments;
+    this.forceMs = Math.max(100, forceMs);
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+    this.writerThread = new Thread(this::writeLoop, "history-journal");
+    this.writerThread.setDaemon(true);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    Files.createDirectories(dir);
+    long t0 = System.currentTimeMillis();
+
+    loadDict();
+    List<Path> segments = segments();
+    long records = 0;
+    for (Path seg : segments) records += replay(seg);
+
+    // sigue escribiendo en el último segmento (o abre el primero)
+    segmentNo = segments.isEmpty() ? 1 : segmentNumber(segments.get(segments.size() - 1));
+    current = map(segmentNo);
+    current.position(firstFree(current));
+
+    log.info("History journal replayed segments={} records={} tookMs={} dir={}",
+      segments.size(), records, System.currentTimeMillis() - t0, dir.toAbsolutePath());
+
+    writerThread.start();
+    cache.addListener(this::append);
+  }
+
+  /** Lo llaman los hilos que traen precios: nunca toca disco */
+  void append(String fiat, String symbol, long epochMs, double value) {
+    if (epochMs <= 0 || !running) return;
+    if (!queue.offer(new Point(fiat, symbol, epochMs, value))) dropped.incrementAndGet();
+  }
+
+  private void writeLoop() {
+    long lastForce = System.currentTimeMillis();
+    while (running) {
+      try {
+        // despierta al menos cada segundo para notar el shutdown
+        long wait = Math.min(1000, lastForce + forceMs - System.currentTimeMillis());
+        Point p = queue.poll(Math.max(1, wait), TimeUnit.MILLISECONDS);
+        if (p != null) write(p);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      long now = System.currentTimeMillis();
+      if (now - lastForce >= forceMs) {
+        force();
+        lastForce = now;
+        long d = dropped.getAndSet(0);
+        if (d > 0) log.warn("History journal queue full, dropped points={}", d);
+      }
+    }
+
+    // shutdown: lo que quedó en cola y el último force
+    Point p;
+    while ((p = queue.poll()) != null) write(p);
+    force();
+  }
+
+  private void write(Point p) {
+    try {
+      int f = ordinal(p.fiat(), fiatOrd, fiats, 'F');
+      int s = ordinal(p.symbol(), symbolOrd, symbols, 'S');
+
+      if (current.remaining() < RECORD_BYTES) roll();
+
+      int pos = current.position();
+      current.putInt(pos, s);
+      current.putInt(pos + 4, f);
+      current.putDouble(pos + 8, p.value());
+      current.putLong(pos + 16, p.epochMs());   // último: marca el registro como completo
+      current.position(pos + RECORD_BYTES);
+    } catch (IOException e) {
+      log.warn("History journal write failed msg={}", e.getMessage());
+    }
+  }
+
+  /** Baja las páginas sucias a disco (el mmap ya sobrevive a un crash del proceso, no del SO) */
+  private void force() {
+    if (current != null) current.force();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    // sin interrupt: un write a medio fsync del dict no debe cortarse
+    running = false;
+    try {
+      writerThread.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void roll() throws IOException {
+    current.force();
+    segmentNo++;
+    current = map(segmentNo);
+
+    List<Path> segments = segments();
+    for (int i = 0; i < segments.size() - maxSegments; i++) {
+      Files.deleteIfExists(segments.get(i));
+    }
+  }
+
+  private long replay(Path seg) throws IOException {
+    ByteBuffer buf;
+    try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ)) {
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+
+    long n = 0;
+    for (int pos = 0; pos + RECORD_BYTES <= buf.limit(); pos += RECORD_BYTES) {
+      long epochMs = buf.getLong(pos + 16);
+      if (epochMs == 0) break;
+
+      int s = buf.getInt(pos);
+      int f = buf.getInt(pos + 4);
+      if (s < 0 || s >= symbols.size() || f < 0 || f >= fiats.size()) continue;
+
+      cache.restore(fiats.get(f), symbols.get(s), epochMs, buf.getDouble(pos + 8));
+      n++;
+    }
+    return n;
+  }
+
+  private MappedByteBuffer map(long no) throws IOException {
+    Path p = dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, no, SEGMENT_SUFFIX));
+    try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // el mapping sigue vivo después de cerrar el canal; el archivo crece en ceros
+      return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+  }
+
+  private int firstFree(ByteBuffer buf) {
+    int pos = 0;
+    while (pos + RECORD_BYTES <= buf.limit() && buf.getLong(pos + 16) != 0) pos += RECORD_BYTES;
+    return pos;
+  }
+
+  private int ordinal(String key, Map<String, Integer> ords, List<String> byOrd, char kind) throws IOException {
+    Integer o = ords.get(key);
+    if (o != null) return o;
+
+    // al dict antes que al segmento: un registro nunca apunta a un ordinal desconocido
+    Files.writeString(dictFile, kind + " " + key + "\n", StandardCharsets.UTF_8,
+      StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    int next = byOrd.size();
+    byOrd.add(key);
+    ords.put(key, next);
+    return next;
+  }
+
+  private void loadDict() throws IOException {
+    if (!Files.exists(dictFile)) return;
+    String all = Files.readString(dictFile, StandardCharsets.UTF_8);
+
+    // línea final sin \n = alta cortada por un crash; ningún registro la usa, se descarta
+    int end = all.lastIndexOf('\n') + 1;
+    if (end < all.length()) {
+      try (FileChannel ch = FileChannel.open(dictFile, StandardOpenOption.WRITE)) {
+        ch.truncate(all.substring(0, end).getBytes(StandardCharsets.UTF_8).length);
+      }
+    }
+
+    for (String line : all.substring(0, end).split("\n")) {
+      if (line.length() < 3 || line.charAt(1) != ' ') continue;
+      String key = line.substring(2);
+      if (line.charAt(0) == 'F') {
+        fiatOrd.put(key, fiats.size());
+        fiats.add(key);
+      } else if (line.charAt(0) == 'S') {
+        symbolOrd.put(key, symbols.size());
+        symbols.add(key);
+      }
+    }
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> s = Files.list(dir)) {
+      return s.filter(p -> {
+          String name = p.getFileName().toString();
+          return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+        })
+        .sorted()
+        .toList();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static long segmentNumber(Path seg) {
+    String name = seg.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+}
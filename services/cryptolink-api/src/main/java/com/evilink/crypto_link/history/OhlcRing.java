@@ -0,0 +1,98 @@
+package com.evilink.crypto_link.history;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Tier agregado de una serie: una vela OHLC por bucket de widthMs, en arreglos primitivos.
+ * Se actualiza incrementalmente en cada punto (sin recalcular) con el mismo seqlock que
+ * SeriesRing: writers con synchronized, readers sin lock.
+ */
+final class OhlcRing {
+
+  private final long widthMs;
+  private final long[] start;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+
+  private volatile long seq;
+  private long written;
+
+  OhlcRing(long widthMs, int capacity) {
+    this.widthMs = widthMs;
+    this.start = new long[capacity];
+    this.open = new double[capacity];
+    this.high = new double[capacity];
+    this.low = new double[capacity];
+    this.close = new double[capacity];
+  }
+
+  /** Puntos de un bucket ya cerrado (más viejo que el último) se ignoran */
+  synchronized void update(long epochMs, double value) {
+    int cap = start.length;
+    long bucket = epochMs - Math.floorMod(epochMs, widthMs);
+    int last = written == 0 ? -1 : (int) ((written - 1) % cap);
+    if (last >= 0 && bucket < start[last]) return;
+
+    long s = seq;
+    seq = s + 1;
+    VarHandle.storeStoreFence();
+
+    if (last >= 0 && start[last] == bucket) {
+      if (value > high[last]) high[last] = value;
+      if (value < low[last]) low[last] = value;
+      close[last] = value;
+    } else {
+      int i = (int) (written % cap);
+      start[i] = bucket;
+      open[i] = value;
+      high[i] = value;
+      low[i] = value;
+      close[i] = value;
+      written++;
+    }
+
+    seq = s + 2;
+  }
+
+  /** Velas con inicio >= sinceMs, de la más vieja a la más nueva (la última puede seguir abierta) */
+  Candles since(long sinceMs) {
+    int cap = start.length;
+    while (true) {
+      long s1 = seq;
+      if ((s1 & 1) != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+
+      long w = written;
+      int n = (int) Math.min(w, cap);
+      int first = (int) ((w - n) % cap);
+
+      // las velas están ordenadas: salta las anteriores a sinceMs
+      int skip = 0;
+      while (skip < n && start[(first + skip) % cap] < sinceMs) skip++;
+
+      int m = n - skip;
+      Candles c = new Candles(new long[m], new double[m], new double[m], new double[m], new double[m]);
+      for (int k = 0; k < m; k++) {
+        int i = (first + skip + k) % cap;
+        c.start()[k] = start[i];
+        c.open()[k] = open[i];
+        c.high()[k] = high[i];
+        c.low()[k] = low[i];
+        c.close()[k] = close[i];
+      }
+
+      VarHandle.loadLoadFence();
+      if (seq == s1) return c;
+    }
+  }
+
+  record Candles(long[] start, double[] open, double[] high, double[] low, double[] close) {
+    int size() {
+      return start.length;
+    }
+  }
+}
@@ -1,15 +1,16 @@
 package com.evilink.crypto_link.history;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Component
 public class PriceHistoryCache {
@@ -24,39 +25,157 @@ public class PriceHistoryCache {
         }
     }
 
-    private final Map<String, Deque<Point>> series = new ConcurrentHashMap<>();
-    private static final int MAX_POINTS = 24;
+    /**
+     * Ventana pedida por el caller. RAW = los últimos puntos tal cual llegaron; las demás
+     * leen del tier agregado que alcanza (cierre de cada vela como valor).
+     */
+    public enum Window {
+        RAW(null, 0),
+        H1("1h", 3_600_000L),
+        H24("24h", 86_400_000L),
+        D7("7d", 604_800_000L);
 
-    public void add(String fiat, String symbol, BigDecimal value) {
-    if (fiat == null || symbol == null || value == null) return;
+        public final String label;
+        final long spanMs;
 
-    String key = fiat.toUpperCase() + ":" + symbol.toUpperCase();
-    Deque<Point> q = series.computeIfAbsent(key, k -> new ArrayDeque<>());
+        Window(String label, long spanMs) {
+            this.label = label;
+            this.spanMs = spanMs;
+        }
 
-    synchronized (q) {
-        // ✅ evita duplicados consecutivos
-        if (!q.isEmpty()) {
-            Point last = q.peekLast();
-            if (last != null && last.v != null && last.v.compareTo(value) == 0) {
-                return;
+        /** null/vacío = RAW (comportamiento de siempre) */
+        public static Window parse(String raw) {
+            if (raw == null || raw.isBlank()) return RAW;
+            String v = raw.trim().toLowerCase(Locale.ROOT);
+            for (Window w : values()) {
+                if (v.equals(w.label)) return w;
             }
+            throw new IllegalArgumentException("Invalid window: " + raw + " (1h|24h|7d)");
         }
+    }
 
-        q.addLast(new Point(Instant.now().toString(), value));
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
 
-        while (q.size() > MAX_POINTS) {
-            q.removeFirst();
+    /** Tiers de una serie; los tres se alimentan del mismo add */
+    private static final class Tiers {
+        final SeriesRing raw;
+        final OhlcRing minutes;
+        final OhlcRing hours;
+
+        Tiers(int rawPoints, int minuteBuckets, int hourBuckets) {
+            this.raw = new SeriesRing(rawPoints);
+            this.minutes = new OhlcRing(MINUTE_MS, minuteBuckets);
+            this.hours = new OhlcRing(HOUR_MS, hourBuckets);
         }
     }
-}
+
+    /** Recibe cada punto nuevo de la serie cruda (no los duplicados ni los restaurados) */
+    public interface PointListener {
+        void onPoint(String fiat, String symbol, long epochMs, double value);
+    }
+
+    // FIAT -> SYMBOL -> tiers (sin armar llaves "FIAT:SYMBOL" en cada add/get)
+    private final Map<String, Map<String, Tiers>> series = new ConcurrentHashMap<>();
+
+    private final int rawPoints;
+    private final int minuteBuckets;
+    private final int hourBuckets;
+    private final List<PointListener> listeners = new CopyOnWriteArrayList<>();
+
+    public PriceHistoryCache(@Value("${cryptolink.history.raw-points:24}") int rawPoints,
+                             @Value("${cryptolink.history.minute-buckets:120}") int minuteBuckets,
+                             @Value("${cryptolink.history.hour-buckets:168}") int hourBuckets) {
+        if (rawPoints < 1 || minuteBuckets < 1 || hourBuckets < 1) {
+            throw new IllegalArgumentException("cryptolink.history.* sizes must be >= 1");
+        }
+        this.rawPoints = rawPoints;
+        this.minuteBuckets = minuteBuckets;
+        this.hourBuckets = hourBuckets;
+    }
+
+    public void add(String fiat, String symbol, BigDecimal value) {
+        if (value == null) return;
+        add(fiat, symbol, System.currentTimeMillis(), value.doubleValue());
+    }
+
+    public void add(String fiat, String symbol, long epochMs, double value) {
+        if (fiat == null || symbol == null || Double.isNaN(value)) return;
+
+        String f = fiat.toUpperCase();
+        String sym = symbol.toUpperCase();
+        if (!append(f, sym, epochMs, value)) return;
+
+        for (PointListener l : listeners) l.onPoint(f, sym, epochMs, value);
+    }
+
+    public void addListener(PointListener listener) {
+        listeners.add(listener);
+    }
+
+    /** Warm start: mismo camino que add pero sin avisar a los listeners (ya está persistido) */
+    void restore(String fiat, String symbol, long epochMs, double value) {
+        if (fiat == null || symbol == null || Double.isNaN(value)) return;
+        append(fiat.toUpperCase(), symbol.toUpperCase(), epochMs, value);
+    }
+
+    /** Warm start de una vela horaria ya agregada; solo toca el tier de horas */
+    void restoreHour(String fiat, String symbol, long bucketMs, double open, double high, double low, double close) {
+        if (fiat == null || symbol == null) return;
+        OhlcRing hours = tiers(fiat.toUpperCase(), symbol.toUpperCase(), true).hours;
+        // open primero y close al final: la vela queda igual a la original
+        hours.update(bucketMs, open);
+        hours.update(bucketMs, high);
+        hours.update(bucketMs, low);
+        hours.update(bucketMs, close);
+    }
+
+    /** true si entró como punto nuevo en la serie cruda */
+    private boolean append(String fiat, String symbol, long epochMs, double value) {
+        Tiers t = tiers(fiat, symbol, true);
+
+        // las velas sí cuentan el punto repetido: mantiene abierto el bucket actual
+        t.minutes.update(epochMs, value);
+        t.hours.update(epochMs, value);
+        // ✅ evita duplicados consecutivos (lo resuelve el ring)
+        return t.raw.append(epochMs, value);
+    }
 
     public List<Point> get(String fiat, String symbol) {
-        String key = fiat.toUpperCase() + ":" + symbol.toUpperCase();
-        Deque<Point> q = series.get(key);
-        if (q == null) return List.of();
+        return get(fiat, symbol, Window.RAW);
+    }
+
+    public List<Point> get(String fiat, String symbol, Window window) {
+        Tiers t = tiers(fiat.toUpperCase(), symbol.toUpperCase(), false);
+        if (t == null) return List.of();
+
+        if (window == Window.RAW) {
+            SeriesRing.Snapshot s = t.raw.snapshot();
+            List<Point> out = new ArrayList<>(s.size());
+            for (int i = 0; i < s.size(); i++) {
+                out.add(new Point(Instant.ofEpochMilli(s.ts()[i]).toString(), BigDecimal.valueOf(s.values()[i])));
+            }
+            return out;
+        }
 
-        synchronized (q) {
-            return new ArrayList<>(q);
+        // 1h con velas de minuto; 24h/7d con velas de hora
+        OhlcRing tier = window == Window.H1 ? t.minutes : t.hours;
+        OhlcRing.Candles c = tier.since(System.currentTimeMillis() - window.spanMs);
+        List<Point> out = new ArrayList<>(c.size());
+        for (int i = 0; i < c.size(); i++) {
+            out.add(new Point(Instant.ofEpochMilli(c.start()[i]).toString(), BigDecimal.valueOf(c.close()[i])));
         }
+        return out;
     }
-}
\ No newline at end of file
+
+    private Tiers tiers(String fiatUpper, String symbolUpper, boolean create) {
+        if (create) {
+            return series
+                .computeIfAbsent(fiatUpper, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(symbolUpper, k -> new Tiers(rawPoints, minuteBuckets, hourBuckets));
+        }
+        Map<String, Tiers> byFiat = series.get(fiatUpper);
+        if (byFiat == null) return null;
+        return byFiat.get(symbolUpper);
+    }
+}
@@ -0,0 +1,179 @@
+package com.evilink.crypto_link.history;
+
+import com.evilink.crypto_link.bus.PriceEventBus;
+import com.evilink.crypto_link.persistence.PriceHistoryRepository;
+import com.evilink.crypto_link.persistence.PriceHistoryRepository.HistoryRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persiste el historial en cryptolink_price_history y lo recarga al arrancar.
+ *
+ * - add() solo encola (nunca toca la DB en el hilo que trae precios); un hilo propio
+ *   vacía la cola cada flush-ms en INSERTs multi-fila de hasta batch-size puntos.
+ * - Si la cola se llena se descartan puntos: el historial es best-effort, el precio no.
+ * - Warm start antes de servir tráfico: velas horarias agregadas en SQL para lo viejo y
+ *   puntos crudos para la ventana que cubren las velas de minuto.
+ */
+@Component
+@DependsOn("flyway")
+@ConditionalOnProperty(name = "cryptolink.history.persist.enabled", havingValue = "true", matchIfMissing = true)
+public class PriceHistoryPersister {
+
+  private static final Logger log = LoggerFactory.getLogger(PriceHistoryPersister.class);
+  private static final long MINUTE_MS = 60_000L;
+  private static final long HOUR_MS = 3_600_000L;
+
+  private final PriceHistoryCache cache;
+  private final PriceHistoryRepository repo;
+  private final PriceEventBus bus;
+  private final int batchSize;
+  private final long flushMs;
+  private final int minuteBuckets;
+  private final int hourBuckets;
+  private final int partitionsAhead;
+  private final int retentionDays;
+  private final boolean journalEnabled;
+
+  private final BlockingQueue<HistoryRow> queue;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread flushThread;
+  private volatile boolean running = true;
+
+  public PriceHistoryPersister(PriceHistoryCache cache,
+                               PriceHistoryRepository repo,
+                               PriceEventBus bus,
+                               @Value("${cryptolink.history.persist.queue-capacity:100000}") int queueCapacity,
+                               @Value("${cryptolink.history.persist.batch-size:1000}") int batchSize,
+                               @Value("${cryptolink.history.persist.flush-ms:2000}") long flushMs,
+                               @Value("${cryptolink.history.minute-buckets:120}") int minuteBuckets,
+                               @Value("${cryptolink.history.hour-buckets:168}") int hourBuckets,
+                               @Value("${cryptolink.history.persist.partitions-ahead:3}") int partitionsAhead,
+                               @Value("${cryptolink.history.persist.retention-days:8}") int retentionDays,
+                               @Value("${cryptolink.history.journal.enabled:false}") boolean journalEnabled) {
+    this.cache = cache;
+    this.repo = repo;
+    this.bus = bus;
+    this.batchSize = Math.max(1, batchSize);
+    this.flushMs = Math.max(100, flushMs);
+    this.minuteBuckets = minuteBuckets;
+    this.hourBuckets = hourBuckets;
+    this.partitionsAhead = Math.max(1, partitionsAhead);
+    this.retentionDays = Math.max(1, retentionDays);
+    this.journalEnabled = journalEnabled;
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+    this.flushThread = new Thread(this::flushLoop, "history-persist");
+    this.flushThread.setDaemon(true);
+  }
+
+  @PostConstruct
+  void start() {
+    // con el journal local el warm start sale de disco (HistoryJournal), no de la DB
+    if (!journalEnabled) preload();
+    cache.addListener(this::enqueue);
+    flushThread.start();
+  }
+
+  private void enqueue(String fiat, String symbol, long epochMs, double value) {
+    // todas las réplicas ven los mismos ticks; con que escriba una basta
+    if (!bus.isLeader()) return;
+    if (!queue.offer(new HistoryRow(fiat, symbol, epochMs, value))) dropped.incrementAndGet();
+  }
+
+  void preload() {
+    long now = System.currentTimeMillis();
+    // los crudos cubren las velas de minuto; antes de eso basta la vela horaria
+    long rawFrom = floor(now - minuteBuckets * MINUTE_MS, HOUR_MS);
+    long hourFrom = floor(now - hourBuckets * HOUR_MS, HOUR_MS);
+
+    try {
+      int[] n = new int[2];
+      if (hourFrom < rawFrom) {
+        for (PriceHistoryRepository.HourRow r : repo.hourCandles(hourFrom, rawFrom)) {
+          cache.restoreHour(r.fiat(), r.symbol(), r.bucketMs(), r.open(), r.high(), r.low(), r.close());
+          n[0]++;
+        }
+      }
+      repo.streamSince(rawFrom, rs -> {
+        cache.restore(rs.getString("fiat"), rs.getString("symbol"), rs.getLong("ms"), rs.getDouble("price"));
+        n[1]++;
+      });
+      log.info("Price history preloaded hourCandles={} rawPoints={} tookMs={}",
+        n[0], n[1], System.currentTimeMillis() - now);
+    } catch (Exception e) {
+      // sin warm start se arranca en frío, como antes
+      log.warn("Price history preload failed msg={}", e.getMessage());
+    }
+  }
+
+  private void flushLoop() {
+    List<HistoryRow> batch = new ArrayList<>(batchSize);
+    while (running) {
+      try {
+        Thread.sleep(flushMs);
+      } catch (InterruptedException e) {
+        // shutdown: sale del sleep y hace el último flush
+      }
+      flush(batch);
+    }
+  }
+
+  private void flush(List<HistoryRow> batch) {
+    while (queue.drainTo(batch, batchSize) > 0) {
+      try {
+        repo.insertBatch(batch);
+      } catch (Exception e) {
+        log.warn("Price history batch insert failed rows={} msg={}", batch.size(), e.getMessage());
+      }
+      batch.clear();
+    }
+
+    long d = dropped.getAndSet(0);
+    if (d > 0) log.warn("Price history queue full, dropped points={}", d);
+  }
+
+  /** Particiones de los próximos días y limpieza de las viejas; una réplica basta */
+  @Scheduled(initialDelayString = "${cryptolink.history.persist.maintenance-initial-delay-ms:10000}",
+             fixedDelayString = "${cryptolink.history.persist.maintenance-ms:3600000}")
+  public void maintainPartitions() {
+    if (!bus.isLeader()) return;
+    try {
+      repo.ensurePartitions(partitionsAhead);
+      int n = repo.dropPartitionsBefore(LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays));
+      if (n > 0) log.info("Price history dropped old partitions count={}", n);
+    } catch (Exception e) {
+      log.warn("Price history partition maintenance failed msg={}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    flushThread.interrupt();
+    try {
+      flushThread.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static long floor(long ms, long width) {
+    return ms - Math.floorMod(ms, width);
+  }
+}
@@ -0,0 +1,33 @@
+package com.evilink.crypto_link.history;
+
+import com.evilink.crypto_link.bus.PriceEventBus;
+import com.evilink.crypto_link.bus.PriceTick;
+import com.evilink.crypto_link.service.PriceTable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Único writer del historial: cada observación fresca de upstream que pasa por el bus
+ * (propia o de otra réplica), con la hora en que se observó. Las lecturas de precios
+ * (cache hits, stale, fallback) ya no escriben historial.
+ */
+@Component
+public class PriceHistoryRecorder {
+
+  private final PriceHistoryCache historyCache;
+
+  public PriceHistoryRecorder(PriceHistoryCache historyCache, PriceEventBus bus) {
+    this.historyCache = historyCache;
+    bus.subscribe(this::onTick);
+  }
+
+  void onTick(PriceTick tick) {
+    long observedAt = tick.observedAtEpochMs();
+    PriceTable table = tick.prices();
+    for (int f = 0; f < table.fiatCount(); f++) {
+      for (int ord = 0; ord < table.symbolCount(); ord++) {
+        double v = table.get(f, ord);
+        if (!Double.isNaN(v)) historyCache.add(table.fiat(f), table.symbol(ord), observedAt, v);
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.evilink.crypto_link.history;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Ring buffer de una serie (fiat, símbolo): timestamps y valores en arreglos primitivos
+ * paralelos (16 bytes por punto, sin objetos).
+ *
+ * Seqlock: los writers se serializan con synchronized; los readers no toman lock, leen
+ * entre dos lecturas de seq y reintentan si hubo una escritura a media lectura.
+ */
+final class SeriesRing {
+
+  private final long[] ts;
+  private final double[] values;
+
+  // par = estable, impar = escritura en curso
+  private volatile long seq;
+  // puntos escritos desde siempre; el siguiente va en written % capacity
+  private long written;
+
+  SeriesRing(int capacity) {
+    this.ts = new long[capacity];
+    this.values = new double[capacity];
+  }
+
+  /** false si es igual al último valor (no se guardan duplicados consecutivos) o es más viejo */
+  synchronized boolean append(long epochMs, double value) {
+    int cap = ts.length;
+    if (written > 0) {
+      int last = (int) ((written - 1) % cap);
+      if (values[last] == value || epochMs < ts[last]) return false;
+    }
+
+    long s = seq;
+    seq = s + 1;
+    VarHandle.storeStoreFence();
+
+    int i = (int) (written % cap);
+    ts[i] = epochMs;
+    values[i] = value;
+    written++;
+
+    seq = s + 2;
+    return true;
+  }
+
+  /** Copia consistente, del más viejo al más nuevo */
+  Snapshot snapshot() {
+    int cap = ts.length;
+    while (true) {
+      long s1 = seq;
+      if ((s1 & 1) != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+
+      long w = written;
+      int n = (int) Math.min(w, cap);
+      long[] outTs = new long[n];
+      double[] outV = new double[n];
+      int start = (int) ((w - n) % cap);
+      for (int k = 0; k < n; k++) {
+        int i = (start + k) % cap;
+        outTs[k] = ts[i];
+        outV[k] = values[i];
+      }
+
+      VarHandle.loadLoadFence();
+      if (seq == s1) return new Snapshot(outTs, outV);
+    }
+  }
+
+  /** Serie leída: timestamps (epoch-ms) y valores alineados */
+  record Snapshot(long[] ts, double[] values) {
+    int size() {
+      return ts.length;
+    }
+  }
+}
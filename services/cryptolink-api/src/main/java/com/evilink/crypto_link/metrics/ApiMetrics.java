@@ -1,9 +1,14 @@
 package com.evilink.crypto_link.metrics;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.function.Supplier;
+
 @Component
 public class ApiMetrics {
 
@@ -34,4 +39,40 @@ public class ApiMetrics {
                 .register(registry)
                 .increment();
     }
+
+    public void incCoalesced(String provider) {
+        Counter.builder("cryptolink_upstream_coalesced_total")
+                .tag("provider", provider)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordProviderLatency(String provider, String outcome, long nanos) {
+        Timer.builder("cryptolink_provider_latency")
+                .tag("provider", provider)
+                .tag("outcome", outcome) // ok | error
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(Duration.ofNanos(nanos));
+    }
+
+    public void incHedged(String slowProvider) {
+        Counter.builder("cryptolink_provider_hedged_total")
+                .tag("provider", slowProvider)
+                .register(registry)
+                .increment();
+    }
+
+    public void incShortCircuited(String provider) {
+        Counter.builder("cryptolink_provider_short_circuited_total")
+                .tag("provider", provider)
+                .register(registry)
+                .increment();
+    }
+
+    public void registerCircuitState(String provider, Supplier<Number> state) {
+        Gauge.builder("cryptolink_provider_circuit_state", state) // 0 closed | 1 half-open | 2 open
+                .tag("provider", provider)
+                .register(registry);
+    }
 }
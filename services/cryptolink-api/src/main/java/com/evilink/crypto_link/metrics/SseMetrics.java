@@ -1,6 +1,7 @@
 package com.evilink.crypto_link.metrics;
 
 import com.evilink.crypto_link.sse.PriceBroadcaster;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
@@ -11,5 +12,14 @@ public class SseMetrics {
     public SseMetrics(MeterRegistry registry, PriceBroadcaster broadcaster) {
         Gauge.builder("cryptolink_sse_connections_active", broadcaster, PriceBroadcaster::activeConnections)
                 .register(registry);
+
+        Gauge.builder("cryptolink_sse_queue_depth", broadcaster, PriceBroadcaster::queuedFrames)
+                .register(registry);
+
+        FunctionCounter.builder("cryptolink_sse_evicted_total", broadcaster, PriceBroadcaster::evictedTotal)
+                .register(registry);
+
+        FunctionCounter.builder("cryptolink_sse_dropped_frames_total", broadcaster, PriceBroadcaster::droppedTotal)
+                .register(registry);
     }
 }
@@ -19,10 +19,14 @@ public class MomentumService {
     }
 
     public List<MomentumRow> getMomentum(List<String> symbols, String fiat) {
+        return getMomentum(symbols, fiat, PriceHistoryCache.Window.RAW);
+    }
+
+    public List<MomentumRow> getMomentum(List<String> symbols, String fiat, PriceHistoryCache.Window window) {
         List<MomentumRow> out = new ArrayList<>();
 
         for (String symbol : symbols) {
-            List<PriceHistoryCache.Point> points = historyCache.get(fiat, symbol);
+            List<PriceHistoryCache.Point> points = historyCache.get(fiat, symbol, window);
 
             if (points == null || points.size() < 3) {
                BigDecimal lastValue = null;
@@ -0,0 +1,115 @@
+package com.evilink.crypto_link.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public class PriceHistoryRepository {
+
+  private final JdbcTemplate jdbc;
+
+  public PriceHistoryRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  public record HistoryRow(String fiat, String symbol, long epochMs, double price) {}
+
+  /** Vela horaria ya agregada en SQL (para el warm start de lo más viejo) */
+  public record HourRow(String fiat, String symbol, long bucketMs, double open, double high, double low, double close) {}
+
+  /** Un solo INSERT multi-fila (unnest de arreglos), idempotente por (fiat, symbol, observed_at) */
+  public int insertBatch(List<HistoryRow> rows) {
+    if (rows.isEmpty()) return 0;
+
+    int n = rows.size();
+    String[] fiats = new String[n];
+    String[] symbols = new String[n];
+    Long[] ts = new Long[n];
+    Double[] prices = new Double[n];
+    for (int i = 0; i < n; i++) {
+      HistoryRow r = rows.get(i);
+      fiats[i] = r.fiat();
+      symbols[i] = r.symbol();
+      ts[i] = r.epochMs();
+      prices[i] = r.price();
+    }
+
+    String sql = """
+      insert into cryptolink_price_history (fiat, symbol, observed_at, price)
+      select f, s, to_timestamp(t / 1000.0), p
+      from unnest(?::text[], ?::text[], ?::bigint[], ?::float8[]) as x(f, s, t, p)
+      on conflict do nothing
+    """;
+
+    return jdbc.update(con -> {
+      PreparedStatement ps = con.prepareStatement(sql);
+      ps.setArray(1, array(con, "text", fiats));
+      ps.setArray(2, array(con, "text", symbols));
+      ps.setArray(3, array(con, "bigint", ts));
+      ps.setArray(4, array(con, "float8", prices));
+      return ps;
+    });
+  }
+
+  /** Puntos crudos desde sinceMs, en orden de tiempo; se recorren sin armar la lista completa */
+  public void streamSince(long sinceMs, RowCallbackHandler handler) {
+    jdbc.query(con -> {
+      PreparedStatement ps = con.prepareStatement("""
+        select fiat, symbol, (extract(epoch from observed_at) * 1000)::bigint as ms, price
+        from cryptolink_price_history
+        where observed_at >= to_timestamp(? / 1000.0)
+        order by observed_at
+      """);
+      ps.setLong(1, sinceMs);
+      ps.setFetchSize(5000);
+      return ps;
+    }, handler);
+  }
+
+  /** Velas horarias en [fromMs, toMs), en orden de tiempo */
+  public List<HourRow> hourCandles(long fromMs, long toMs) {
+    String sql = """
+      select fiat, symbol,
+             (extract(epoch from date_trunc('hour', observed_at)) * 1000)::bigint as bucket,
+             (array_agg(price order by observed_at))[1] as open,
+             max(price) as high,
+             min(price) as low,
+             (array_agg(price order by observed_at desc))[1] as close
+      from cryptolink_price_history
+      where observed_at >= to_timestamp(? / 1000.0)
+        and observed_at < to_timestamp(? / 1000.0)
+      group by fiat, symbol, bucket
+      order by bucket
+    """;
+    return jdbc.query(sql, (rs, n) -> new HourRow(
+      rs.getString("fiat"),
+      rs.getString("symbol"),
+      rs.getLong("bucket"),
+      rs.getDouble("open"),
+      rs.getDouble("high"),
+      rs.getDouble("low"),
+      rs.getDouble("close")
+    ), fromMs, toMs);
+  }
+
+  public void ensurePartitions(int daysAhead) {
+    jdbc.queryForObject("select cryptolink_price_history_ensure_partitions(?)", Object.class, daysAhead);
+  }
+
+  public int dropPartitionsBefore(LocalDate keepFrom) {
+    Integer n = jdbc.queryForObject("select cryptolink_price_history_drop_before(?)", Integer.class, keepFrom);
+    return n == null ? 0 : n;
+  }
+
+  private static Array array(Connection con, String type, Object[] values) throws SQLException {
+    return con.createArrayOf(type, values);
+  }
+}
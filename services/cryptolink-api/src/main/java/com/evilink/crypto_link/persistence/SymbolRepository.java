@@ -1,5 +1,6 @@
 package com.evilink.crypto_link.persistence;
 
+import com.evilink.crypto_link.service.SymbolRegistry;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -9,9 +10,11 @@ import java.util.*;
 public class SymbolRepository {
 
   private final NamedParameterJdbcTemplate jdbc;
+  private final SymbolRegistry registry;
 
-  public SymbolRepository(NamedParameterJdbcTemplate jdbc) {
+  public SymbolRepository(NamedParameterJdbcTemplate jdbc, SymbolRegistry registry) {
     this.jdbc = jdbc;
+    this.registry = registry;
   }
 
   public List<String> listActiveSymbols() {
@@ -24,25 +27,17 @@ public class SymbolRepository {
     return jdbc.getJdbcTemplate().queryForList(sql, String.class);
   }
 
+  /** Sale del SymbolRegistry (memoria), ya no pega a la tabla */
   public Map<String, String> resolveIds(List<String> symbolsUpper) {
     if (symbolsUpper == null || symbolsUpper.isEmpty()) return Map.of();
 
-    String sql = """
-      select symbol, coingecko_id
-      from cryptolink_symbols
-      where active = true
-        and symbol in (:symbols)
-    """;
-
-    Map<String, Object> params = Map.of("symbols", symbolsUpper);
-
-    var rows = jdbc.query(sql, params, (rs, n) -> new AbstractMap.SimpleEntry<>(
-        rs.getString("symbol"),
-        rs.getString("coingecko_id")
-    ));
-
+    Map<String, String> active = registry.symbolToCoingeckoId();
     Map<String, String> out = new HashMap<>();
-    for (var e : rows) out.put(e.getKey(), e.getValue());
+    for (String sym : symbolsUpper) {
+      if (sym == null) continue;
+      String id = active.get(sym.toUpperCase());
+      if (id != null) out.put(sym, id);
+    }
     return out;
   }
 }
@@ -81,8 +81,8 @@ public class ApiKeyFilter extends OncePerRequestFilter {
     String apiKey = request.getHeader("x-api-key");
     ApiKeyStore.Plan plan = null;
 
-    // 1) SSE por token si no viene header
-    if ((apiKey == null || apiKey.isBlank()) && path.startsWith("/v1/stream/")) {
+    // 1) SSE / WebSocket por token si no viene header (EventSource y WebSocket no mandan headers)
+    if ((apiKey == null || apiKey.isBlank()) && (path.startsWith("/v1/stream/") || path.startsWith("/v1/ws/"))) {
       String token = request.getParameter("token");
       var ctx = sseTokenService.resolve(token);
       if (ctx != null) {
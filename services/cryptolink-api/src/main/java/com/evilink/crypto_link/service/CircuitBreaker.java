@@ -0,0 +1,131 @@
+package com.evilink.crypto_link.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Circuit breaker por proveedor:
+ * - CLOSED: pasa todo; N fallas seguidas (o un 429/503) lo abren.
+ * - OPEN: rechaza al instante hasta openUntil (backoff exponencial, o Retry-After si es mayor).
+ * - HALF_OPEN: deja pasar UNA llamada de prueba; si sale bien cierra, si no vuelve a abrir.
+ */
+public class CircuitBreaker {
+
+  public enum State { CLOSED, HALF_OPEN, OPEN }
+
+  private final int failureThreshold;
+  private final long baseOpenMs;
+  private final long maxOpenMs;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures = 0;
+  private int consecutiveOpens = 0;
+  private long openUntilEpochMs = 0;
+  private boolean probeInFlight = false;
+
+  public CircuitBreaker(int failureThreshold, long baseOpenMs, long maxOpenMs) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.baseOpenMs = Math.max(1, baseOpenMs);
+    this.maxOpenMs = Math.max(this.baseOpenMs, maxOpenMs);
+  }
+
+  /** true si la llamada puede salir; en HALF_OPEN solo la primera (la sonda) */
+  public synchronized boolean tryAcquire(long nowMs) {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (nowMs < openUntilEpochMs) return false;
+        state = State.HALF_OPEN;
+        probeInFlight = true;
+        return true;
+      case HALF_OPEN:
+      default:
+        if (probeInFlight) return false;
+        probeInFlight = true;
+        return true;
+    }
+  }
+
+  public synchronized void onSuccess() {
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    consecutiveOpens = 0;
+    probeInFlight = false;
+  }
+
+  /** La llamada no llegó a probar upstream: suelta la sonda sin cambiar estado ni rachas */
+  public synchronized void release() {
+    probeInFlight = false;
+  }
+
+  public synchronized void onFailure(long nowMs, Throwable error) {
+    consecutiveFailures++;
+    long retryAfterMs = retryAfterMs(error, nowMs);
+
+    // ya estaba abierto (llamadas que salieron antes de abrir): solo respeta un Retry-After más largo
+    if (state == State.OPEN) {
+      if (retryAfterMs > 0) {
+        openUntilEpochMs = Math.max(openUntilEpochMs, nowMs + Math.min(retryAfterMs, maxOpenMs));
+      }
+      return;
+    }
+    boolean throttled = retryAfterMs > 0 || isThrottle(error);
+
+    if (state == State.HALF_OPEN || throttled || consecutiveFailures >= failureThreshold) {
+      open(nowMs, retryAfterMs);
+    }
+  }
+
+  public synchronized State state(long nowMs) {
+    if (state == State.OPEN && nowMs >= openUntilEpochMs) return State.HALF_OPEN;
+    return state;
+  }
+
+  public synchronized long openUntilEpochMs() {
+    return openUntilEpochMs;
+  }
+
+  private void open(long nowMs, long retryAfterMs) {
+    consecutiveOpens++;
+    // backoff: base, 2x, 4x... hasta maxOpenMs
+    int shift = Math.min(consecutiveOpens - 1, 20);
+    long backoff = Math.min(maxOpenMs, baseOpenMs << shift);
+
+    state = State.OPEN;
+    probeInFlight = false;
+    openUntilEpochMs = nowMs + Math.max(backoff, Math.min(retryAfterMs, maxOpenMs));
+  }
+
+  private static boolean isThrottle(Throwable error) {
+    if (!(error instanceof RestClientResponseException re)) return false;
+    int status = re.getStatusCode().value();
+    return status == 429 || status == 503;
+  }
+
+  /** Retry-After en segundos o fecha HTTP; 0 si no viene */
+  static long retryAfterMs(Throwable error, long nowMs) {
+    if (!(error instanceof RestClientResponseException re)) return 0;
+    HttpHeaders headers = re.getResponseHeaders();
+    if (headers == null) return 0;
+
+    String v = headers.getFirst(HttpHeaders.RETRY_AFTER);
+    if (v == null || v.isBlank()) return 0;
+    v = v.trim();
+
+    try {
+      return Math.max(0, Long.parseLong(v) * 1000);
+    } catch (NumberFormatException ignored) {
+      // puede venir como fecha: "Wed, 21 Oct 2015 07:28:00 GMT"
+    }
+    try {
+      long at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+      return Math.max(0, at - nowMs);
+    } catch (Exception ignored) {
+      return 0;
+    }
+  }
+}
@@ -1,36 +1,149 @@
 package com.evilink.crypto_link.service;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Component
-public class CoinGeckoPriceProvider {
+public class CoinGeckoPriceProvider implements PriceProvider {
 
   private final RestClient coingecko;
-  private final SymbolService symbolService;
+  private final SymbolRegistry symbolRegistry;
 
-  public CoinGeckoPriceProvider(RestClient coingeckoRestClient, SymbolService symbolService) {
+  // largo máximo de "ids=...&vs_currencies=..." por llamada (proxies/CDN cortan URLs largas)
+  private final int maxQueryChars;
+
+  public CoinGeckoPriceProvider(RestClient coingeckoRestClient,
+                                SymbolRegistry symbolRegistry,
+                                @Value("${cryptolink.coingecko.max-query-chars:1800}") int maxQueryChars) {
     this.coingecko = coingeckoRestClient;
-    this.symbolService = symbolService;
+    this.symbolRegistry = symbolRegistry;
+    this.maxQueryChars = maxQueryChars;
+  }
+
+  @Override
+  public String name() {
+    return "coingecko";
+  }
+
+  @Override
+  public void validate(List<String> symbols) {
+    requireMapped(normalize(symbols), symbolRegistry.snapshot().symbolToCoingeckoId);
+  }
+
+  /**
+   * N ids × M fiats en una sola /simple/price (vs_currencies acepta CSV).
+   * Si la URL quedaría muy larga se parte en varias llamadas. El body se lee token por
+   * token directo a la PriceTable (sin Map intermedio ni boxing de cada número).
+   */
+  @Override
+  public PriceTable getPriceTable(List<String> symbols, Collection<String> fiats) {
+
+    SymbolRegistry.Snapshot reg = symbolRegistry.snapshot();
+    Map<String,String> symToId = reg.symbolToCoingeckoId;
+
+    List<String> vsList = fiats.stream()
+      .filter(Objects::nonNull)
+      .map(f -> f.trim().toLowerCase())
+      .filter(f -> !f.isBlank())
+      .distinct()
+      .toList();
+
+    PriceTable table = new PriceTable(vsList, reg.symbolsByOrdinal);
+    if (vsList.isEmpty()) return table;
+    String vs = String.join(",", vsList);
+
+    List<String> norm = normalize(symbols);
+    requireMapped(norm, symToId);
+
+    // ids para coingecko
+    List<String> ids = norm.stream()
+      .map(symToId::get)
+      .filter(id -> id != null && !id.isBlank())
+      .distinct()
+      .toList();
+
+    if (ids.isEmpty()) return table;
+
+    for (String idsCsv : splitByQueryLength(ids, vs)) {
+      coingecko.get()
+        .uri(uriBuilder -> uriBuilder
+          .path("/simple/price")
+          .queryParam("ids", idsCsv)
+          .queryParam("vs_currencies", vs)
+          .build())
+        .exchange((req, res) -> {
+          if (res.getStatusCode().isError()) {
+            throw upstreamError(res);
+          }
+          try (InputStream body = res.getBody()) {
+            readInto(body, table, reg.ordinalsByCoingeckoId);
+          }
+          return null;
+        });
+    }
+
+    return table;
   }
 
-  @SuppressWarnings("unchecked")
-  public Map<String, BigDecimal> getPrices(List<String> symbols, String fiat) {
+  /**
+   * Parser streaming de {"bitcoin":{"usd":1.0,"mxn":2.0},...}.
+   * Ids o fiats que no esperamos se saltan sin materializarlos.
+   */
+  static void readInto(InputStream body, PriceTable table, Map<String, int[]> ordinalsById) throws IOException {
+    JsonReader r = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    if (r.peek() != JsonToken.BEGIN_OBJECT) {
+      r.skipValue();
+      return;
+    }
+
+    r.beginObject();
+    while (r.hasNext()) {
+      int[] ords = ordinalsById.get(r.nextName());
+      if (ords == null || r.peek() != JsonToken.BEGIN_OBJECT) {
+        r.skipValue();
+        continue;
+      }
 
-    Map<String,String> symToId = symbolService.listActiveSymbolToCoingeckoId();
-    String vs = fiat.toLowerCase();
+      r.beginObject();
+      while (r.hasNext()) {
+        int f = table.fiatIndex(r.nextName());
+        if (f < 0 || r.peek() != JsonToken.NUMBER) {
+          r.skipValue();
+          continue;
+        }
+        double v = r.nextDouble();
+        for (int ord : ords) table.set(f, ord, v);
+      }
+      r.endObject();
+    }
+    r.endObject();
+  }
 
-    List<String> norm = symbols.stream()
+  private static List<String> normalize(List<String> symbols) {
+    return symbols.stream()
       .filter(Objects::nonNull)
       .map(s -> s.trim().toUpperCase())
       .filter(s -> !s.isBlank())
       .distinct()
       .toList();
+  }
 
-    // Detecta símbolos sin mapping
+  // Detecta símbolos sin mapping
+  private static void requireMapped(List<String> norm, Map<String, String> symToId) {
     List<String> missing = norm.stream()
       .filter(sym -> {
         String id = symToId.get(sym);
@@ -42,51 +155,35 @@ public class CoinGeckoPriceProvider {
     if (!missing.isEmpty()) {
       throw new IllegalArgumentException("Missing coingecko_id for: " + missing);
     }
+  }
 
-    // ids para coingecko
-    String ids = norm.stream()
-      .map(symToId::get)
-      .filter(id -> id != null && !id.isBlank())
-      .distinct()
-      .reduce((a,b) -> a + "," + b)
-      .orElse("");
-
-    if (ids.isBlank()) return Map.of();
-
-    Map<String,Object> resp = coingecko.get()
-      .uri(uriBuilder -> uriBuilder
-        .path("/simple/price")
-        .queryParam("ids", ids)
-        .queryParam("vs_currencies", vs)
-        .build())
-      .retrieve()
-      .body(Map.class);
-
-    if (resp == null) return Map.of();
-
-    // reverse map: id -> symbol
-    Map<String,String> idToSym = new HashMap<>();
-    for (String sym : norm) {
-      String id = symToId.get(sym);
-      if (id != null) idToSym.put(id, sym);
+  private static RestClientResponseException upstreamError(ClientHttpResponse res) throws IOException {
+    HttpStatusCode status = res.getStatusCode();
+    byte[] body = res.getBody().readAllBytes();
+    String msg = "CoinGecko " + status.value() + " on /simple/price";
+    if (status.is4xxClientError()) {
+      return HttpClientErrorException.create(msg, status, res.getStatusText(), res.getHeaders(), body, StandardCharsets.UTF_8);
     }
+    return HttpServerErrorException.create(msg, status, res.getStatusText(), res.getHeaders(), body, StandardCharsets.UTF_8);
+  }
 
-    Map<String, BigDecimal> out = new LinkedHashMap<>();
-
-    for (var entry : resp.entrySet()) {
-      String id = entry.getKey();
-      Object rowObj = entry.getValue();
-      if (!(rowObj instanceof Map<?,?> row)) continue;
-
-      Object priceObj = row.get(vs);
-      if (!(priceObj instanceof Number n)) continue;
-
-      String sym = idToSym.get(id);
-      if (sym != null) {
-        out.put(sym, BigDecimal.valueOf(n.doubleValue()));
+  /** Agrupa ids en CSVs cuyo query string no pase de maxQueryChars */
+  private List<String> splitByQueryLength(List<String> ids, String vs) {
+    // "ids=" + "&vs_currencies=" + vs
+    int fixed = 4 + 15 + vs.length();
+
+    List<String> batches = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    for (String id : ids) {
+      int extra = (sb.length() == 0 ? 0 : 1) + id.length();
+      if (sb.length() > 0 && fixed + sb.length() + extra > maxQueryChars) {
+        batches.add(sb.toString());
+        sb.setLength(0);
       }
+      if (sb.length() > 0) sb.append(',');
+      sb.append(id);
     }
-
-    return out;
+    if (sb.length() > 0) batches.add(sb.toString());
+    return batches;
   }
 }
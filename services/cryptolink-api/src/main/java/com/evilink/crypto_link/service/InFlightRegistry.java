@@ -0,0 +1,59 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight para llamadas upstream: si ya hay una llamada en curso con la misma
+ * key, los demás esperan ese mismo future en lugar de pegarle otra vez a CoinGecko.
+ */
+@Component
+public class InFlightRegistry {
+
+  private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final ApiMetrics metrics;
+
+  public InFlightRegistry(ApiMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T run(String provider, String key, Supplier<T> call) {
+    CompletableFuture<Object> mine = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+    // alguien más ya está pidiendo lo mismo: nos colgamos de su resultado
+    if (existing != null) {
+      metrics.incCoalesced(provider);
+      return (T) join(existing);
+    }
+
+    try {
+      T result = call.get();
+      mine.complete(result);
+      return result;
+    } catch (Throwable e) {
+      // también Errors (OOM, NoClassDefFoundError...): un future sin completar deja
+      // colgados para siempre a los que se unieron en join()
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, mine);
+    }
+  }
+
+  private static Object join(CompletableFuture<Object> f) {
+    try {
+      return f.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      if (e.getCause() instanceof Error err) throw err;
+      throw e;
+    }
+  }
+}
@@ -10,34 +10,59 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class PriceCache {
 
+    /** Cotización individual de un (fiat, símbolo); se guarda el double tal cual vino de upstream */
     public static class Entry {
-        public final Map<String, BigDecimal> prices;
+        public final double value;
         public final long fetchedAtEpochMs;
         public final long expiresAtEpochMs;
 
-        public Entry(Map<String, BigDecimal> prices, long fetchedAtEpochMs, long expiresAtEpochMs) {
-            this.prices = prices;
+        public Entry(double value, long fetchedAtEpochMs, long expiresAtEpochMs) {
+            this.value = value;
             this.fetchedAtEpochMs = fetchedAtEpochMs;
             this.expiresAtEpochMs = expiresAtEpochMs;
         }
 
+        /** BigDecimal solo al armar la respuesta JSON */
+        public BigDecimal price() {
+            return BigDecimal.valueOf(value);
+        }
+
         public boolean isFresh(long nowMs) {
             return nowMs <= expiresAtEpochMs;
         }
     }
 
-    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    // FIAT -> SYMBOL -> cotización (así BTC,ETH y BTC,ETH,SOL comparten entradas)
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry>> cache = new ConcurrentHashMap<>();
 
-    public Entry get(String key) {
-        return cache.get(key);
+    public Entry get(String fiat, String symbol) {
+        Map<String, Entry> byFiat = cache.get(fiat.toUpperCase());
+        if (byFiat == null) return null;
+        return byFiat.get(symbol.toUpperCase());
     }
 
-    public void put(String key, Map<String, BigDecimal> prices, long ttlMs) {
+    public void put(String fiat, Map<String, BigDecimal> prices, long ttlMs) {
         long now = Instant.now().toEpochMilli();
-        cache.put(key, new Entry(prices, now, now + ttlMs));
+        Map<String, Entry> byFiat = cache.computeIfAbsent(fiat.toUpperCase(), k -> new ConcurrentHashMap<>());
+
+        for (var p : prices.entrySet()) {
+            if (p.getKey() == null || p.getValue() == null) continue;
+            byFiat.put(p.getKey().toUpperCase(), new Entry(p.getValue().doubleValue(), now, now + ttlMs));
+        }
     }
 
-    public static String key(String fiat, String symbolsCsv) {
-        return fiat.toUpperCase() + "|" + symbolsCsv.toUpperCase().replace(" ", "");
+    /** Publica una respuesta upstream completa (propia o de otra réplica) sin pasar por BigDecimal */
+    public void put(PriceTable table, long ttlMs) {
+        long now = Instant.now().toEpochMilli();
+
+        for (int f = 0; f < table.fiatCount(); f++) {
+            Map<String, Entry> byFiat = null;
+            for (int ord = 0; ord < table.symbolCount(); ord++) {
+                double v = table.get(f, ord);
+                if (Double.isNaN(v)) continue;
+                if (byFiat == null) byFiat = cache.computeIfAbsent(table.fiat(f), k -> new ConcurrentHashMap<>());
+                byFiat.put(table.symbol(ord), new Entry(v, now, now + ttlMs));
+            }
+        }
     }
 }
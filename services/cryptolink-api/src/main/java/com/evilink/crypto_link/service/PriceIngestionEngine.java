@@ -0,0 +1,136 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.bus.PriceEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingesta de mercado completo: cada tick refresca TODOS los símbolos activos de
+ * cryptolink_symbols para TODOS los fiats activos y los publica en PriceCache.
+ * Con esto /v1/prices, el poller SSE y el snapshot leen de memoria y el gasto
+ * contra CoinGecko queda fijo (símbolos/batch llamadas por tick), sin importar el tráfico.
+ *
+ * Los batches corren en un pool propio con deadline por ciclo (igual que PricePoller): el
+ * hilo del scheduler, que comparten poller, keepalive y elección de líder, nunca espera más
+ * de cycle-deadline-ms por un upstream lento.
+ */
+@Component
+public class PriceIngestionEngine {
+
+  private static final Logger log = LoggerFactory.getLogger(PriceIngestionEngine.class);
+
+  private final PriceService priceService;
+  private final SymbolRegistry symbolRegistry;
+  private final FiatService fiatService;
+  private final PriceEventBus bus;
+
+  private final boolean enabled;
+  private final long delayMs;
+
+  // CoinGecko: mejor no mandar listas enormes en una sola llamada
+  private final int batchSize = 25;
+
+  // tope de espera por ciclo; lo que no llegue sigue corriendo y publica al terminar
+  private final long cycleDeadlineMs;
+
+  // pool acotado = tope de llamadas upstream simultáneas de la ingesta
+  private final ExecutorService fetchPool;
+
+  // batches del ciclo anterior que siguen corriendo: mientras tanto no se encola otro ciclo
+  // (si no, con upstream caído la cola del pool crece sin fin)
+  private volatile CompletableFuture<Void> lastCycle = CompletableFuture.completedFuture(null);
+
+  public PriceIngestionEngine(PriceService priceService,
+                              SymbolRegistry symbolRegistry,
+                              FiatService fiatService,
+                              PriceEventBus bus,
+                              @Value("${cryptolink.ingest.enabled:false}") boolean enabled,
+                              @Value("${cryptolink.ingest.delay-ms:15000}") long delayMs,
+                              @Value("${cryptolink.ingest.concurrency:2}") int concurrency,
+                              @Value("${cryptolink.ingest.cycle-deadline-ms:5000}") long cycleDeadlineMs) {
+    this.priceService = priceService;
+    this.symbolRegistry = symbolRegistry;
+    this.fiatService = fiatService;
+    this.bus = bus;
+    this.enabled = enabled;
+    this.delayMs = delayMs;
+    this.cycleDeadlineMs = cycleDeadlineMs;
+
+    AtomicInteger n = new AtomicInteger();
+    this.fetchPool = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+      Thread t = new Thread(r, "price-ingest-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  @Scheduled(fixedDelayString = "${cryptolink.ingest.delay-ms:15000}", initialDelayString = "${cryptolink.ingest.initial-delay-ms:2000}")
+  public void ingest() {
+    // con varias réplicas solo el líder del bus ingesta; el resto recibe los ticks
+    if (!enabled || !bus.isLeader()) return;
+
+    List<String> symbols;
+    Set<String> fiats;
+    try {
+      symbols = symbolRegistry.activeSymbols();
+      fiats = fiatService.listActiveSet();
+    } catch (Exception e) {
+      log.warn("Ingest skipped: could not load symbols/fiats msg={}", e.getMessage());
+      return;
+    }
+    if (symbols.isEmpty() || fiats.isEmpty()) return;
+
+    if (!lastCycle.isDone()) {
+      log.warn("Ingest skipped: previous cycle still has batches in flight");
+      return;
+    }
+
+    // lo publicado debe seguir fresco hasta el siguiente tick (con margen por si tarda)
+    long publishTtlMs = delayMs * 2;
+
+    // una llamada por batch cubre todos los fiats (vs_currencies=usd,mxn,eur)
+    AtomicInteger failed = new AtomicInteger();
+    List<CompletableFuture<Void>> batches = new ArrayList<>();
+    for (int i = 0; i < symbols.size(); i += batchSize) {
+      List<String> chunk = symbols.subList(i, Math.min(i + batchSize, symbols.size()));
+      batches.add(CompletableFuture.runAsync(() -> {
+        try {
+          priceService.refresh(chunk, fiats, publishTtlMs);
+        } catch (Exception e) {
+          // un batch caído no tumba el resto del tick
+          failed.incrementAndGet();
+          log.warn("Ingest batch failed fiats={} symbols={} msg={}", fiats, chunk, e.getMessage());
+        }
+      }, fetchPool));
+    }
+
+    CompletableFuture<Void> cycle = CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new));
+    lastCycle = cycle;
+    try {
+      cycle.get(cycleDeadlineMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      long late = batches.stream().filter(f -> !f.isDone()).count();
+      log.warn("Ingest cycle deadline hit deadlineMs={} lateBatches={}/{}", cycleDeadlineMs, late, batches.size());
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Exception e) {
+      log.warn("Ingest cycle failed msg={}", e.getMessage());
+      return;
+    }
+
+    log.debug("Ingest tick symbols={} fiats={} upstreamCalls={} failed={}", symbols.size(), fiats.size(), batches.size(), failed.get());
+  }
+}
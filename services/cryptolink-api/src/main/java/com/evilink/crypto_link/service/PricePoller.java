@@ -1,13 +1,21 @@
 package com.evilink.crypto_link.service;
 
+import com.evilink.crypto_link.bus.PriceEventBus;
 import com.evilink.crypto_link.sse.PriceBroadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class PricePoller {
@@ -16,13 +24,34 @@ public class PricePoller {
 
   private final PriceBroadcaster broadcaster;
   private final PriceService priceService;
+  // el líder consulta upstream; las demás réplicas transmiten lo que llega por el bus
+  private final PriceEventBus bus;
 
   // CoinGecko: mejor no mandar listas enormes en una sola llamada
   private final int batchSize = 25;
 
-  public PricePoller(PriceBroadcaster broadcaster, PriceService priceService) {
+  // tope para todo el tick: lo que no llegue a tiempo se transmite en el siguiente
+  private final long tickDeadlineMs;
+
+  // pool acotado = tope de llamadas upstream simultáneas por tick
+  private final ExecutorService fetchPool;
+
+  public PricePoller(PriceBroadcaster broadcaster,
+                     PriceService priceService,
+                     PriceEventBus bus,
+                     @Value("${cryptolink.poller.concurrency:4}") int concurrency,
+                     @Value("${cryptolink.poller.tick-deadline-ms:3000}") long tickDeadlineMs) {
     this.broadcaster = broadcaster;
     this.priceService = priceService;
+    this.bus = bus;
+    this.tickDeadlineMs = tickDeadlineMs;
+
+    AtomicInteger n = new AtomicInteger();
+    this.fetchPool = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+      Thread t = new Thread(r, "price-poller-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
   }
 
   // fixedDelay evita empalmes si una llamada tarda
@@ -35,38 +64,51 @@ public class PricePoller {
     Map<String, Set<String>> req = broadcaster.snapshotRequested();
     if (req.isEmpty()) return;
 
+    // 1) batches multi-fiat en paralelo (con tope) y deadline para todo el tick. El líder
+    //    refresca lo que caduca; las demás réplicas solo lo que nadie refresca (lo que piden
+    //    únicamente sus clientes)
+    List<Runnable> jobs = bus.isLeader()
+      ? priceService.prefetchBatches(req, batchSize)
+      : priceService.prefetchOrphanBatches(req, batchSize);
+    List<CompletableFuture<Void>> batches = jobs.stream()
+      .map(job -> CompletableFuture.runAsync(job, fetchPool))
+      .toList();
+
+    if (!batches.isEmpty()) {
+      try {
+        CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+          .get(tickDeadlineMs, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // los batches lentos siguen corriendo y llenan el cache para el próximo tick
+        long late = batches.stream().filter(f -> !f.isDone()).count();
+        log.warn("Poller tick deadline hit deadlineMs={} lateBatches={}/{}", tickDeadlineMs, late, batches.size());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.warn("Poller prefetch failed msg={}", e.getMessage());
+      }
+    }
+
+    // 2) transmite lo que haya (parcial si algún batch no llegó), solo memoria
+    //    (en réplicas no líderes el cache lo llenan sobre todo los ticks del bus)
     for (var e : req.entrySet()) {
       String fiat = e.getKey();
       List<String> symbols = new ArrayList<>(e.getValue());
       if (symbols.isEmpty()) continue;
 
-      // Acumula precios de todos los batches
-      Map<String, Object> allPrices = new LinkedHashMap<>();
-      String source = "unknown";
-
       try {
-        for (int i = 0; i < symbols.size(); i += batchSize) {
-          List<String> chunk = symbols.subList(i, Math.min(i + batchSize, symbols.size()));
-
-          var r = priceService.getPrices(chunk, fiat);
-
-          // r.prices es Map<String, BigDecimal> (o similar), lo metemos a un Map genérico
-          for (var p : r.prices.entrySet()) {
-            allPrices.put(p.getKey(), p.getValue());
-          }
-
-          // si viene mezclado cache/coingecko, no pasa nada, solo reporta el último
-          source = r.source;
-        }
+        var r = priceService.getCached(symbols, fiat);
+        if (r.prices.isEmpty()) continue;
 
         // payload único por fiat
         Map<String, Object> payload = Map.of(
           "ts", OffsetDateTime.now().toString(),
           "fiat", fiat.toUpperCase(),
-          "source", source
+          "source", r.source
         );
 
-        broadcaster.broadcastPrices(fiat, payload, allPrices);
+        broadcaster.broadcastPrices(fiat, payload, r.prices);
 
       } catch (Exception ex) {
         // IMPORTANTÍSIMO: que NO mate todo el tick
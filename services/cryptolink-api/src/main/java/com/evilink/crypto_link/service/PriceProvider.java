@@ -0,0 +1,24 @@
+package com.evilink.crypto_link.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Fuente upstream de precios. Cada implementación se registra como bean y
+ * PriceProviderRegistry decide el orden (cryptolink.providers.priority).
+ */
+public interface PriceProvider {
+
+  /** Nombre corto; es el "source" que ve el cliente y el tag de métricas */
+  String name();
+
+  /**
+   * Chequeo local (sin red) antes de gastar un permiso del circuito: IllegalArgumentException
+   * si el proveedor no sabe pedir alguno de los símbolos.
+   */
+  default void validate(List<String> symbols) {
+  }
+
+  /** Precios de N símbolos × M fiats en tabla primitiva (NaN = sin precio) */
+  PriceTable getPriceTable(List<String> symbols, Collection<String> fiats);
+}
@@ -0,0 +1,253 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.exception.CircuitOpenException;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registro de proveedores de precio con prioridad configurable y hedged requests:
+ * si el primario no contesta dentro de su percentil de latencia (p95 por default)
+ * se lanza el siguiente y gana la primera respuesta buena. Si uno falla, se pasa
+ * al siguiente de inmediato. Cada proveedor va detrás de su CircuitBreaker.
+ */
+@Component
+public class PriceProviderRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(PriceProviderRegistry.class);
+
+  /** Resultado + quién lo contestó (va como "source" en la respuesta) */
+  public record Fetched(String provider, PriceTable prices) {}
+
+  private final List<PriceProvider> ordered;
+  private final Map<String, LatencyWindow> latencies = new HashMap<>();
+  private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+  private final ApiMetrics metrics;
+
+  private final double hedgePercentile;
+  private final long hedgeMinDelayMs;
+
+  private final ExecutorService hedgePool;
+
+  public PriceProviderRegistry(List<PriceProvider> providers,
+                               ApiMetrics metrics,
+                               @Value("${cryptolink.providers.priority:coingecko}") String priorityCsv,
+                               @Value("${cryptolink.providers.hedge-percentile:0.95}") double hedgePercentile,
+                               @Value("${cryptolink.providers.hedge-min-delay-ms:250}") long hedgeMinDelayMs,
+                               @Value("${cryptolink.providers.breaker.failure-threshold:5}") int breakerFailureThreshold,
+                               @Value("${cryptolink.providers.breaker.open-ms:5000}") long breakerOpenMs,
+                               @Value("${cryptolink.providers.breaker.max-open-ms:300000}") long breakerMaxOpenMs) {
+    this.metrics = metrics;
+    this.hedgePercentile = hedgePercentile;
+    this.hedgeMinDelayMs = hedgeMinDelayMs;
+
+    // orden: primero los listados en priority (en ese orden), luego el resto
+    List<String> priority = Arrays.stream(priorityCsv.split(","))
+      .map(String::trim)
+      .filter(s -> !s.isBlank())
+      .map(String::toLowerCase)
+      .toList();
+
+    List<PriceProvider> sorted = new ArrayList<>(providers);
+    sorted.sort(Comparator.comparingInt(p -> {
+      int i = priority.indexOf(p.name().toLowerCase());
+      return i < 0 ? Integer.MAX_VALUE : i;
+    }));
+    this.ordered = List.copyOf(sorted);
+
+    for (PriceProvider p : ordered) {
+      latencies.put(p.name(), new LatencyWindow(256));
+      CircuitBreaker breaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenMs, breakerMaxOpenMs);
+      breakers.put(p.name(), breaker);
+      metrics.registerCircuitState(p.name(), () -> breaker.state(System.currentTimeMillis()).ordinal());
+    }
+
+    AtomicInteger n = new AtomicInteger();
+    this.hedgePool = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "price-provider-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+
+    log.info("Price providers order={}", ordered.stream().map(PriceProvider::name).toList());
+  }
+
+  public List<String> providerNames() {
+    return ordered.stream().map(PriceProvider::name).toList();
+  }
+
+  public Fetched fetch(List<String> symbols, Collection<String> fiats) {
+    if (ordered.isEmpty()) {
+      throw new IllegalStateException("No price providers registered");
+    }
+
+    // un solo proveedor: sin saltos de hilo
+    if (ordered.size() == 1) {
+      PriceProvider p = ordered.get(0);
+      return new Fetched(p.name(), timed(p, symbols, fiats));
+    }
+
+    return hedged(symbols, fiats);
+  }
+
+  private Fetched hedged(List<String> symbols, Collection<String> fiats) {
+    CompletableFuture<Fetched> winner = new CompletableFuture<>();
+    AtomicInteger launched = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+    launchNext(symbols, fiats, winner, launched, failed, errors);
+
+    // mientras nadie conteste: espera el percentil del que va corriendo y lanza el siguiente
+    while (!winner.isDone()) {
+      int running = launched.get();
+      if (running >= ordered.size()) break;
+
+      String slow = ordered.get(running - 1).name();
+      try {
+        return winner.get(hedgeDelayMs(slow), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (launched.get() < ordered.size()) {
+          metrics.incHedged(slow);
+          launchNext(symbols, fiats, winner, launched, failed, errors);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted waiting for price providers", e);
+      } catch (ExecutionException e) {
+        throw unwrap(e.getCause());
+      }
+    }
+
+    try {
+      return winner.join();
+    } catch (CompletionException e) {
+      throw unwrap(e.getCause());
+    }
+  }
+
+  private void launchNext(List<String> symbols, Collection<String> fiats, CompletableFuture<Fetched> winner,
+                          AtomicInteger launched, AtomicInteger failed, Queue<Throwable> errors) {
+    int i = launched.getAndIncrement();
+    if (i >= ordered.size()) {
+      launched.decrementAndGet();
+      return;
+    }
+    PriceProvider p = ordered.get(i);
+
+    CompletableFuture
+      .supplyAsync(() -> new Fetched(p.name(), timed(p, symbols, fiats)), hedgePool)
+      .whenComplete((r, ex) -> {
+        if (ex == null) {
+          winner.complete(r);
+          return;
+        }
+        // falló: pasa al siguiente sin esperar el hedge delay
+        errors.add(ex.getCause() != null ? ex.getCause() : ex);
+        if (failed.incrementAndGet() >= ordered.size()) {
+          winner.completeExceptionally(allFailed(errors));
+        } else {
+          launchNext(symbols, fiats, winner, launched, failed, errors);
+        }
+      });
+  }
+
+  /** Todos fallaron: se propaga el primer error (conserva su tipo) con los demás como suppressed */
+  private static Throwable allFailed(Queue<Throwable> errors) {
+    Throwable first = errors.poll();
+    for (Throwable t : errors) {
+      if (t != first) first.addSuppressed(t);
+    }
+    return first;
+  }
+
+  private PriceTable timed(PriceProvider p, List<String> symbols, Collection<String> fiats) {
+    CircuitBreaker breaker = breakers.get(p.name());
+
+    // un símbolo sin mapping es error nuestro, no del proveedor: ni toca el circuito
+    p.validate(symbols);
+
+    // circuito abierto: falla al instante (sin quemar el timeout) y el caller sirve stale
+    if (!breaker.tryAcquire(System.currentTimeMillis())) {
+      metrics.incShortCircuited(p.name());
+      throw new CircuitOpenException(p.name(), breaker.openUntilEpochMs());
+    }
+
+    long t0 = System.nanoTime();
+    boolean settled = false;
+    try {
+      PriceTable r = p.getPriceTable(symbols, fiats);
+      long nanos = System.nanoTime() - t0;
+      breaker.onSuccess();
+      settled = true;
+      latencies.get(p.name()).record(nanos / 1_000_000);
+      metrics.recordProviderLatency(p.name(), "ok", nanos);
+      return r;
+    } catch (IllegalArgumentException e) {
+      // error nuestro (p.ej. el mapping cambió entre validate y la llamada): ni circuito ni error upstream
+      throw e;
+    } catch (RuntimeException e) {
+      breaker.onFailure(System.currentTimeMillis(), e);
+      settled = true;
+      metrics.recordProviderLatency(p.name(), "error", System.nanoTime() - t0);
+      metrics.incUpstreamError(p.name());
+      log.warn("Provider failed provider={} symbols={} circuit={} msg={}",
+        p.name(), symbols, breaker.state(System.currentTimeMillis()), e.getMessage());
+      throw e;
+    } finally {
+      // IAE o un Error (OOM, StackOverflowError...): suelta el permiso, si no la sonda
+      // half-open queda tomada y el circuito no vuelve a dejar pasar nada
+      if (!settled) breaker.release();
+    }
+  }
+
+  private long hedgeDelayMs(String provider) {
+    LatencyWindow w = latencies.get(provider);
+    long p = w == null ? -1 : w.percentile(hedgePercentile);
+    return Math.max(hedgeMinDelayMs, p);
+  }
+
+  private static RuntimeException unwrap(Throwable t) {
+    if (t instanceof RuntimeException re) return re;
+    return new IllegalStateException(t);
+  }
+
+  /** Últimas N latencias (ms) de un proveedor para calcular el hedge delay */
+  static final class LatencyWindow {
+    private final long[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    LatencyWindow(int capacity) {
+      this.samples = new long[capacity];
+    }
+
+    synchronized void record(long ms) {
+      samples[next] = ms;
+      next = (next + 1) % samples.length;
+      if (size < samples.length) size++;
+    }
+
+    /** -1 si todavía no hay muestras */
+    synchronized long percentile(double q) {
+      if (size == 0) return -1;
+      long[] copy = Arrays.copyOf(samples, size);
+      Arrays.sort(copy);
+      int idx = (int) Math.ceil(q * size) - 1;
+      return copy[Math.max(0, Math.min(idx, size - 1))];
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package com.evilink.crypto_link.service;
 
-import com.evilink.crypto_link.metrics.ApiMetrics;
-import com.evilink.crypto_link.history.PriceHistoryCache;
+import com.evilink.crypto_link.bus.PriceEventBus;
+import com.evilink.crypto_link.bus.PriceTick;
+import com.evilink.crypto_link.exception.CircuitOpenException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,65 +11,275 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class PriceService {
 
-    private final CoinGeckoPriceProvider provider;
+    private final PriceProviderRegistry providers;
     private final PriceCache cache;
-    private final ApiMetrics metrics;
-    private final PriceHistoryCache historyCache;
+    private final InFlightRegistry inFlight;
+    private final PriceEventBus bus;
     private static final Logger log = LoggerFactory.getLogger(PriceService.class);
 
-    // TTL corto para MVP (evita pegarle demasiado a CoinGecko)
-    private final long ttlMs = 3000; // 3 segundos
+    // soft TTL: hasta aquí el precio es "fresco" (evita pegarle demasiado a CoinGecko)
+    private final long ttlMs;
+    // hard TTL: entre soft y hard se sirve lo viejo al instante y se refresca en background
+    private final long hardTtlMs;
+    private final boolean staleWhileRevalidate;
 
-    public PriceService(CoinGeckoPriceProvider provider, PriceCache cache, ApiMetrics metrics, PriceHistoryCache historyCache) {
-        this.provider = provider;
+    // FIAT|SYMBOL que ya tienen un refresh en background en curso
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ExecutorService revalidator = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "price-revalidate");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PriceService(PriceProviderRegistry providers, PriceCache cache,
+                        InFlightRegistry inFlight,
+                        PriceEventBus bus,
+                        @Value("${cryptolink.prices.soft-ttl-ms:3000}") long ttlMs,
+                        @Value("${cryptolink.prices.hard-ttl-ms:30000}") long hardTtlMs,
+                        @Value("${cryptolink.prices.stale-while-revalidate:true}") boolean staleWhileRevalidate) {
+        this.providers = providers;
         this.cache = cache;
-        this.metrics = metrics;
-        this.historyCache = historyCache;
+        this.inFlight = inFlight;
+        this.bus = bus;
+        this.ttlMs = ttlMs;
+        this.hardTtlMs = Math.max(ttlMs, hardTtlMs);
+        this.staleWhileRevalidate = staleWhileRevalidate;
+
+        // ticks de otras réplicas llenan el cache local (los propios ya se guardaron en fetch)
+        bus.subscribe(this::onTick);
     }
 
     public Result getPrices(List<String> symbols, String fiat) {
-        String symbolsCsv = symbols.stream()
+        List<String> norm = symbols.stream()
+                .filter(Objects::nonNull)
                 .map(s -> s.trim().toUpperCase())
                 .filter(s -> !s.isBlank())
                 .distinct()
-                .sorted()
-                .collect(Collectors.joining(","));
-
-        String key = PriceCache.key(fiat, symbolsCsv);
+                .toList();
 
         long now = System.currentTimeMillis();
-        PriceCache.Entry entry = cache.get(key);
 
-        // 1) si hay cache fresco, regresa cache
-        if (entry != null && entry.isFresh(now)) {
-            entry.prices.forEach((symbol, value) -> historyCache.add(fiat, symbol, value));
-            return Result.from(entry.prices, fiat, "cache", entry.fetchedAtEpochMs);
+        // 1) arma la respuesta con las cotizaciones individuales que sigan frescas
+        Map<String, BigDecimal> cached = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (String sym : norm) {
+            PriceCache.Entry entry = cache.get(fiat, sym);
+            if (entry != null && entry.isFresh(now)) {
+                cached.put(sym, entry.price());
+            } else if (entry != null && staleWhileRevalidate && now - entry.fetchedAtEpochMs <= hardTtlMs) {
+                cached.put(sym, entry.price());
+                stale.add(sym);
+            } else {
+                missing.add(sym);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            Map<String, BigDecimal> out = ordered(norm, cached, Map.of());
+            if (!stale.isEmpty()) {
+                // 1b) viejito pero dentro del hard TTL: se sirve ya y se refresca por detrás
+                revalidate(stale, fiat);
+                return Result.from(out, fiat, "stale-revalidating", now);
+            }
+            return Result.from(out, fiat, "cache", now);
         }
 
-        // 2) si no, intenta proveedor
+        // 2) solo pide al proveedor lo que falta o ya caducó (single-flight);
+        //    si de todos modos hay que ir upstream, de paso refresca los stale
         try {
-            Map<String, BigDecimal> fresh = provider.getPrices(Arrays.asList(symbolsCsv.split(",")), fiat);
-            cache.put(key, fresh, ttlMs);
-            fresh.forEach((symbol, value) -> historyCache.add(fiat, symbol, value));
-            return Result.from(fresh, fiat, "coingecko", System.currentTimeMillis());
+            List<String> toFetch = new ArrayList<>(missing);
+            toFetch.addAll(stale);
+            PriceProviderRegistry.Fetched fetched = fetch(toFetch, List.of(fiat), ttlMs);
+            Map<String, BigDecimal> fresh = fetched.prices().toMap(fiat);
+            Map<String, BigDecimal> out = ordered(norm, cached, fresh);
+            return Result.from(out, fiat, fetched.provider(), System.currentTimeMillis());
         } catch (Exception e) {
-            metrics.incUpstreamError("coingecko");
-            log.warn("Upstream error provider=coingecko fiat={} symbols={}", fiat, symbolsCsv, e);
-            // 3) si falla proveedor y hay cache viejo, regresa stale
-            if (entry != null) {
-                entry.prices.forEach((symbol, value) -> historyCache.add(fiat, symbol, value));
-                return Result.from(entry.prices, fiat, "stale-cache", entry.fetchedAtEpochMs);
+            // el registry ya contó el error por proveedor
+            if (e instanceof CircuitOpenException) {
+                // circuito abierto: no se intentó nada, directo a stale sin ruido en logs
+                log.debug("Circuit open, serving stale fiat={} symbols={}", fiat, missing);
+            } else {
+                log.warn("Upstream error providers={} fiat={} symbols={}", providers.providerNames(), fiat, missing, e);
+            }
+            // 3) si falla proveedor, completa con lo viejo que haya por símbolo
+            Map<String, BigDecimal> old = new HashMap<>();
+            for (String sym : missing) {
+                PriceCache.Entry entry = cache.get(fiat, sym);
+                if (entry != null) old.put(sym, entry.price());
+            }
+            if (!old.isEmpty()) {
+                Map<String, BigDecimal> out = ordered(norm, cached, old);
+                return Result.from(out, fiat, "stale-cache", now);
             }
             // 4) si no hay nada, truena (lo convertimos a 502 en controller)
             throw e;
         }
     }
 
+    /**
+     * Solo memoria, nunca upstream: lo que haya en cache dentro del hard TTL.
+     * Lo usa el poller al cerrar un tick para no quedarse colgado de un batch lento.
+     */
+    public Result getCached(List<String> symbols, String fiat) {
+        long now = System.currentTimeMillis();
+        Map<String, BigDecimal> out = new LinkedHashMap<>();
+        boolean allFresh = true;
+
+        for (String sym : symbols) {
+            PriceCache.Entry entry = cache.get(fiat, sym);
+            if (entry == null || now - entry.fetchedAtEpochMs > hardTtlMs) continue;
+            if (!entry.isFresh(now)) allFresh = false;
+            out.put(sym.toUpperCase(), entry.price());
+        }
+
+        return Result.from(out, fiat, allFresh ? "cache" : "stale-cache", now);
+    }
+
+    /**
+     * Para el poller: junta lo que le falta (o ya caducó) a todos los fiats pedidos y lo
+     * parte en batches multi-fiat (una llamada por batch en vez de una por fiat).
+     * Cada tarea es independiente para que el poller las pueda correr en paralelo.
+     */
+    public List<Runnable> prefetchBatches(Map<String, ? extends Collection<String>> requested, int batchSize) {
+        return batches(requested, batchSize, false);
+    }
+
+    /**
+     * Para réplicas no líderes: el líder solo consulta lo que piden SUS clientes, así que lo
+     * que pide solo esta réplica nunca llega por el bus. Aquí se piden únicamente los pares
+     * sin precio o ya pasados del hard TTL (nadie los está refrescando); lo demás lo trae el
+     * líder. El fetch publica en el bus, así que las demás réplicas también lo reciben.
+     */
+    public List<Runnable> prefetchOrphanBatches(Map<String, ? extends Collection<String>> requested, int batchSize) {
+        return batches(requested, batchSize, true);
+    }
+
+    private List<Runnable> batches(Map<String, ? extends Collection<String>> requested, int batchSize, boolean orphansOnly) {
+        long now = System.currentTimeMillis();
+        Set<String> fiats = new TreeSet<>();
+        Set<String> symbols = new TreeSet<>();
+
+        for (var e : requested.entrySet()) {
+            for (String sym : e.getValue()) {
+                if (needsFetch(cache.get(e.getKey(), sym), now, orphansOnly)) {
+                    fiats.add(e.getKey().toUpperCase());
+                    symbols.add(sym.toUpperCase());
+                }
+            }
+        }
+        if (symbols.isEmpty()) return List.of();
+
+        List<String> list = new ArrayList<>(symbols);
+        List<Runnable> out = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += batchSize) {
+            List<String> chunk = list.subList(i, Math.min(i + batchSize, list.size()));
+            out.add(() -> {
+                // puede correr tarde (cola del pool con upstream lento): lo que otro tick ya
+                // refrescó mientras tanto no se vuelve a pedir
+                List<String> stillStale = staleSymbols(chunk, fiats, orphansOnly);
+                if (stillStale.isEmpty()) return;
+                try {
+                    fetch(stillStale, fiats, ttlMs);
+                } catch (Exception e) {
+                    log.warn("Prefetch failed fiats={} symbols={} msg={}", fiats, chunk, e.getMessage());
+                }
+            });
+        }
+        return out;
+    }
+
+    /** Símbolos a los que les falta (o ya caducó) el precio en alguno de los fiats */
+    private List<String> staleSymbols(List<String> symbols, Collection<String> fiats, boolean orphansOnly) {
+        long now = System.currentTimeMillis();
+        List<String> out = new ArrayList<>();
+        for (String sym : symbols) {
+            for (String fiat : fiats) {
+                if (needsFetch(cache.get(fiat, sym), now, orphansOnly)) {
+                    out.add(sym);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    private boolean needsFetch(PriceCache.Entry entry, long now, boolean orphansOnly) {
+        if (entry == null) return true;
+        return orphansOnly ? now - entry.fetchedAtEpochMs > hardTtlMs : !entry.isFresh(now);
+    }
+
+    /**
+     * Para el motor de ingesta: siempre va upstream (una llamada para todos los fiats)
+     * y publica en el cache con el TTL indicado, así las lecturas entre ticks no vuelven
+     * a salir a CoinGecko.
+     */
+    public PriceTable refresh(List<String> symbols, Collection<String> fiats, long publishTtlMs) {
+        return fetch(symbols, fiats, publishTtlMs).prices();
+    }
+
+    /** Una sola llamada upstream por (fiats, símbolos) aunque lleguen N requests a la vez */
+    private PriceProviderRegistry.Fetched fetch(List<String> symbols, Collection<String> fiats, long publishTtlMs) {
+        List<String> fiatList = fiats.stream().map(String::toUpperCase).distinct().sorted().toList();
+        String key = String.join(",", fiatList) + "|" + String.join(",", symbols.stream().sorted().toList());
+        return inFlight.run("upstream", key, () -> {
+            PriceProviderRegistry.Fetched fresh = providers.fetch(symbols, fiatList);
+            cache.put(fresh.prices(), publishTtlMs);
+            if (!fresh.prices().isEmpty()) {
+                bus.publish(new PriceTick(bus.instanceId(), fresh.provider(), System.currentTimeMillis(),
+                        publishTtlMs, fresh.prices()));
+            }
+            return fresh;
+        });
+    }
+
+    private void onTick(PriceTick tick) {
+        if (bus.instanceId().equals(tick.origin())) return;
+        cache.put(tick.prices(), tick.ttlMs());
+    }
+
+    /** Refresh en background; cada (fiat, símbolo) se encola una sola vez a la vez */
+    private void revalidate(List<String> symbols, String fiat) {
+        String F = fiat.toUpperCase();
+        List<String> todo = symbols.stream()
+                .filter(sym -> revalidating.add(F + "|" + sym))
+                .toList();
+        if (todo.isEmpty()) return;
+
+        try {
+            revalidator.execute(() -> {
+                try {
+                    fetch(todo, List.of(F), ttlMs);
+                } catch (Exception e) {
+                    log.warn("Background refresh failed fiat={} symbols={} msg={}", F, todo, e.getMessage());
+                } finally {
+                    todo.forEach(sym -> revalidating.remove(F + "|" + sym));
+                }
+            });
+        } catch (RuntimeException e) {
+            todo.forEach(sym -> revalidating.remove(F + "|" + sym));
+            log.warn("Could not schedule background refresh fiat={} symbols={}", F, todo, e);
+        }
+    }
+
+    /** Respeta el orden pedido por el cliente al juntar cache + proveedor */
+    private static Map<String, BigDecimal> ordered(List<String> symbols, Map<String, BigDecimal> cached, Map<String, BigDecimal> fetched) {
+        Map<String, BigDecimal> out = new LinkedHashMap<>();
+        for (String sym : symbols) {
+            BigDecimal v = fetched.get(sym);
+            if (v == null) v = cached.get(sym);
+            if (v != null) out.put(sym, v);
+        }
+        return out;
+    }
+
     public static class Result {
         public final Map<String, BigDecimal> prices;
         public final String fiat;
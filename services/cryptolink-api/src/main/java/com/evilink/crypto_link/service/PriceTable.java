@@ -0,0 +1,80 @@
+package com.evilink.crypto_link.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabla primitiva fiat × símbolo (por ordinal del SymbolRegistry) para respuestas
+ * upstream: un solo double[] plano, NaN = sin precio. Evita el árbol de Maps y el
+ * boxing por número al parsear /simple/price.
+ *
+ * Una vez llena pasa tal cual al cache y al bus: nadie la modifica después del fetch.
+ */
+public final class PriceTable {
+
+  private final String[] fiats;   // UPPER
+  private final String[] symbols; // por ordinal
+  private final double[] values;  // [fiat * symbols.length + ordinal]
+
+  public PriceTable(List<String> fiats, String[] symbolsByOrdinal) {
+    this.fiats = fiats.stream().map(String::toUpperCase).toArray(String[]::new);
+    this.symbols = symbolsByOrdinal;
+    this.values = new double[this.fiats.length * symbolsByOrdinal.length];
+    Arrays.fill(values, Double.NaN);
+  }
+
+  public int fiatCount() { return fiats.length; }
+  public int symbolCount() { return symbols.length; }
+  public String fiat(int fiatIdx) { return fiats[fiatIdx]; }
+  public String symbol(int ordinal) { return symbols[ordinal]; }
+
+  /** -1 si el fiat no viene en la tabla; case-insensitive (CoinGecko manda "usd") */
+  public int fiatIndex(String fiat) {
+    for (int i = 0; i < fiats.length; i++) {
+      if (fiats[i].equalsIgnoreCase(fiat)) return i;
+    }
+    return -1;
+  }
+
+  public void set(int fiatIdx, int ordinal, double value) {
+    values[fiatIdx * symbols.length + ordinal] = value;
+  }
+
+  /** NaN si no hay precio */
+  public double get(int fiatIdx, int ordinal) {
+    return values[fiatIdx * symbols.length + ordinal];
+  }
+
+  public boolean isEmpty() {
+    for (double v : values) {
+      if (!Double.isNaN(v)) return false;
+    }
+    return true;
+  }
+
+  /** SYMBOL -> precio de un fiat (solo para armar respuestas; el hot path usa get) */
+  public Map<String, BigDecimal> toMap(String fiat) {
+    int f = fiatIndex(fiat);
+    if (f < 0) return Map.of();
+
+    Map<String, BigDecimal> out = new LinkedHashMap<>();
+    for (int ord = 0; ord < symbols.length; ord++) {
+      double v = get(f, ord);
+      if (!Double.isNaN(v)) out.put(symbols[ord], BigDecimal.valueOf(v));
+    }
+    return out;
+  }
+
+  /** FIAT -> SYMBOL -> precio (tests y logs; el cache y el bus usan la tabla directo) */
+  public Map<String, Map<String, BigDecimal>> toNestedMap() {
+    Map<String, Map<String, BigDecimal>> out = new LinkedHashMap<>();
+    for (String f : fiats) {
+      Map<String, BigDecimal> m = toMap(f);
+      if (!m.isEmpty()) out.put(f, m);
+    }
+    return out;
+  }
+}
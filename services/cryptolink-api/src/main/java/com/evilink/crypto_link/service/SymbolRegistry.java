@@ -0,0 +1,175 @@
+package com.evilink.crypto_link.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registro en memoria de cryptolink_symbols (symbol -> coingecko_id), versionado.
+ * Carga completa al arrancar y luego refresh incremental por updated_at, así el
+ * path de precios (provider, validator, /v1/symbols) no toca Postgres.
+ */
+@Component
+public class SymbolRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(SymbolRegistry.class);
+
+  /**
+   * Foto inmutable; se reemplaza completa cuando algo cambia.
+   * El ordinal de un símbolo es su posición en activeSymbols y solo vale para esta versión.
+   */
+  public static final class Snapshot {
+    public final long version;
+    public final Map<String, String> symbolToCoingeckoId; // solo activos
+    public final List<String> activeSymbols;              // ordenados
+    public final String[] symbolsByOrdinal;
+    public final Map<String, Integer> ordinalBySymbol;
+    public final Map<String, int[]> ordinalsByCoingeckoId; // un id puede mapear a varios símbolos
+
+    Snapshot(long version, Map<String, String> symbolToCoingeckoId) {
+      this.version = version;
+      this.symbolToCoingeckoId = Collections.unmodifiableMap(symbolToCoingeckoId);
+      this.activeSymbols = symbolToCoingeckoId.keySet().stream().sorted().toList();
+      this.symbolsByOrdinal = activeSymbols.toArray(String[]::new);
+
+      Map<String, Integer> bySymbol = new HashMap<>();
+      Map<String, int[]> byId = new HashMap<>();
+      for (int i = 0; i < symbolsByOrdinal.length; i++) {
+        final int ord = i;
+        bySymbol.put(symbolsByOrdinal[i], ord);
+        byId.merge(symbolToCoingeckoId.get(symbolsByOrdinal[i]), new int[] { ord }, (a, b) -> {
+          int[] c = Arrays.copyOf(a, a.length + 1);
+          c[a.length] = ord;
+          return c;
+        });
+      }
+      this.ordinalBySymbol = Collections.unmodifiableMap(bySymbol);
+      this.ordinalsByCoingeckoId = Collections.unmodifiableMap(byId);
+    }
+  }
+
+  private final SymbolService symbolService;
+  private final long fullReloadMs;
+
+  private volatile Snapshot current = new Snapshot(0, Map.of());
+
+  // estado del refresh (solo bajo synchronized)
+  private final Map<String, SymbolService.SymbolRow> rows = new HashMap<>();
+  private Instant watermark = null;
+  private long lastFullReloadMs = 0;
+  private int failures = 0;
+
+  // carga inicial fallida: a lo más un intento en segundo plano a la vez, con backoff
+  private final AtomicBoolean loading = new AtomicBoolean();
+  private volatile long nextLoadAttemptMs = 0;
+
+  public SymbolRegistry(SymbolService symbolService,
+                        @Value("${cryptolink.symbols.full-reload-ms:600000}") long fullReloadMs) {
+    this.symbolService = symbolService;
+    this.fullReloadMs = fullReloadMs;
+  }
+
+  /**
+   * Nunca bloquea: mientras la carga inicial no llega (DB caída al arrancar) regresa la foto
+   * vacía (los callers usan sus defaults) y dispara un intento en segundo plano.
+   */
+  public Snapshot snapshot() {
+    Snapshot s = current;
+    if (s.version == 0) loadInBackground();
+    return s;
+  }
+
+  private void loadInBackground() {
+    if (System.currentTimeMillis() < nextLoadAttemptMs || !loading.compareAndSet(false, true)) return;
+    Thread t = new Thread(() -> {
+      try {
+        refresh();
+      } finally {
+        loading.set(false);
+      }
+    }, "symbol-registry-load");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  public long version() {
+    return snapshot().version;
+  }
+
+  public List<String> activeSymbols() {
+    return snapshot().activeSymbols;
+  }
+
+  public Map<String, String> symbolToCoingeckoId() {
+    return snapshot().symbolToCoingeckoId;
+  }
+
+  public boolean isActive(String symbol) {
+    return symbol != null && snapshot().symbolToCoingeckoId.containsKey(symbol.trim().toUpperCase());
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    refresh();
+  }
+
+  @Scheduled(fixedDelayString = "${cryptolink.symbols.refresh-ms:30000}", initialDelayString = "${cryptolink.symbols.refresh-ms:30000}")
+  public void scheduledRefresh() {
+    refresh();
+  }
+
+  public synchronized void refresh() {
+    long now = System.currentTimeMillis();
+    boolean full = watermark == null || now - lastFullReloadMs >= fullReloadMs;
+
+    List<SymbolService.SymbolRow> changed;
+    try {
+      changed = full ? symbolService.listAll() : symbolService.listChangedSince(watermark);
+    } catch (Exception e) {
+      // backoff exponencial (1s .. 60s) para los intentos en segundo plano de snapshot()
+      failures++;
+      nextLoadAttemptMs = now + Math.min(60_000L, 1000L << Math.min(failures - 1, 6));
+      log.warn("Symbol registry refresh failed full={} failures={} msg={}", full, failures, e.getMessage());
+      return;
+    }
+    failures = 0;
+    nextLoadAttemptMs = 0;
+
+    Map<String, SymbolService.SymbolRow> before = full ? new HashMap<>(rows) : null;
+    if (full) {
+      rows.clear();
+      lastFullReloadMs = now;
+    }
+
+    boolean dirty = false;
+    for (SymbolService.SymbolRow r : changed) {
+      SymbolService.SymbolRow prev = rows.put(r.symbol(), r);
+      if (!full && !r.equals(prev)) dirty = true;
+      if (watermark == null || r.updatedAt().isAfter(watermark)) watermark = r.updatedAt();
+    }
+    if (full) dirty = !rows.equals(before) || current.version == 0;
+    if (!dirty) return;
+
+    Map<String, String> active = new HashMap<>();
+    for (SymbolService.SymbolRow r : rows.values()) {
+      if (r.active() && r.coingeckoId() != null && !r.coingeckoId().isBlank()) {
+        active.put(r.symbol(), r.coingeckoId());
+      }
+    }
+
+    current = new Snapshot(current.version + 1, active);
+    log.info("Symbol registry updated version={} active={} full={}", current.version, active.size(), full);
+  }
+}
@@ -2,7 +2,10 @@ package com.evilink.crypto_link.service;
 
 import org.springframework.stereotype.Service;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
 
 @Service
@@ -11,22 +14,29 @@ public class SymbolService {
 
   public SymbolService(JdbcTemplate jdbc) { this.jdbc = jdbc; }
 
-  public Set<String> listActive() {
-    return new HashSet<>(jdbc.queryForList(
-      "select symbol from cryptolink_symbols where active=true",
-      String.class
-    ));
+  /** Fila cruda de cryptolink_symbols (incluye inactivos, para el refresh incremental) */
+  public record SymbolRow(String symbol, String coingeckoId, boolean active, Instant updatedAt) {}
+
+  private static final RowMapper<SymbolRow> ROW = (rs, n) -> new SymbolRow(
+    rs.getString("symbol").toUpperCase(),
+    rs.getString("coingecko_id"),
+    rs.getBoolean("active"),
+    rs.getTimestamp("updated_at").toInstant()
+  );
+
+  public List<SymbolRow> listAll() {
+    return jdbc.query(
+      "select symbol, coingecko_id, active, updated_at from cryptolink_symbols",
+      ROW
+    );
   }
 
-  public Map<String, String> listActiveSymbolToCoingeckoId() {
-    List<Map<String,Object>> rows = jdbc.queryForList(
-      "select symbol, coingecko_id from cryptolink_symbols where active=true"
+  /** >= a propósito: filas con el mismo timestamp que el watermark no se pierden */
+  public List<SymbolRow> listChangedSince(Instant since) {
+    return jdbc.query(
+      "select symbol, coingecko_id, active, updated_at from cryptolink_symbols where updated_at >= ? order by updated_at",
+      ROW,
+      Timestamp.from(since)
     );
-    Map<String,String> out = new HashMap<>();
-    for (var r : rows) {
-      out.put(((String)r.get("symbol")).toUpperCase(), ((String)r.get("coingecko_id")));
-    }
-    return out;
   }
 }
-
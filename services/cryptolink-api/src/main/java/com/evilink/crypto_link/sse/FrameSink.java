@@ -0,0 +1,16 @@
+package com.evilink.crypto_link.sse;
+
+import java.io.IOException;
+
+/**
+ * Transporte de una suscripción (SSE o WebSocket). PriceBroadcaster arma los frames y
+ * los manda por aquí desde su propio hilo de envío, nunca desde el poller.
+ */
+public interface FrameSink {
+
+  /** data es JSON ya serializado y compartido entre suscriptores: no modificar */
+  void send(String event, String id, byte[] data) throws IOException;
+
+  /** Cierra la conexión (cliente lento o caído) */
+  void close();
+}
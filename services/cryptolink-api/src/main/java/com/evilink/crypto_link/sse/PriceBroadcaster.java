@@ -1,43 +1,272 @@
 package com.evilink.crypto_link.sse;
 
 import com.evilink.crypto_link.security.ApiKeyStore;
+import com.evilink.crypto_link.service.PriceService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 public class PriceBroadcaster {
 
-  private final ApiKeyStore store;
+  private static final Logger log = LoggerFactory.getLogger(PriceBroadcaster.class);
+
+  // frames se serializan una vez por grupo; mismo JSON que Jackson para Map/BigDecimal/String
+  private static final Gson JSON = new GsonBuilder().disableHtmlEscaping().create();
+
+  // Number.MAX_SAFE_INTEGER + 1: hasta aquí un entero escalado llega exacto a un cliente JS
+  private static final BigDecimal MAX_SAFE_SCALED = BigDecimal.valueOf(1L << 53);
 
-  public PriceBroadcaster(ApiKeyStore store) {
+  private final ApiKeyStore store;
+  // solo para el snapshot inicial de mode=delta (memoria, sin upstream)
+  private final PriceService priceService;
+
+  // frames pendientes por cliente arriba de esto = cliente lento
+  private final int maxQueue;
+  // cuánto puede seguir arriba del límite antes de sacarlo
+  private final long evictAfterMs;
+  // ticks por fiat que se guardan para reanudar con Last-Event-ID
+  private final int replaySize;
+  // format=compact: precios como enteros = precio * 10^scale
+  private final int compactScale;
+
+  // keepalive con hashed timer wheel: cada cliente está en el slot del tick anterior a su
+  // vencimiento (último envío + keepalive-ms) y cada tick revisa solo un slot
+  private final long keepAliveMs;
+  private final long wheelTickMs;
+  private final List<Set<Subscription>> wheel;
+  // último tick (tiempo / wheelTickMs) ya revisado; solo lo toca keepAliveTick
+  private long wheelTick = -1;
+
+  // los envíos nunca corren en el hilo del poller/scheduler; cada cliente drena en a lo más un hilo.
+  // Pool acotado: la cola tiene a lo más un drain por cliente
+  private final ThreadPoolExecutor sendPool;
+  // un send bloqueado más de esto (cliente que no lee) se corta y el cliente se saca
+  private final long sendTimeoutMs;
+  // las bajas por lentitud corren aquí: enqueue puede venir con locks de ring/grupo tomados
+  private final ExecutorService evictor;
+  private final AtomicLong evicted = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  public PriceBroadcaster(ApiKeyStore store,
+                          PriceService priceService,
+                          @Value("${cryptolink.sse.max-queue:32}") int maxQueue,
+                          @Value("${cryptolink.sse.evict-after-ms:30000}") long evictAfterMs,
+                          @Value("${cryptolink.sse.replay-size:64}") int replaySize,
+                          @Value("${cryptolink.sse.keepalive-ms:25000}") long keepAliveMs,
+                          @Value("${cryptolink.sse.keepalive-slots:10}") int keepAliveSlots,
+                          @Value("${cryptolink.sse.compact-scale:8}") int compactScale,
+                          @Value("${cryptolink.sse.send-threads:32}") int sendThreads,
+                          @Value("${cryptolink.sse.send-timeout-ms:10000}") long sendTimeoutMs) {
     this.store = store;
+    this.priceService = priceService;
+    this.maxQueue = Math.max(1, maxQueue);
+    this.evictAfterMs = evictAfterMs;
+    this.replaySize = replaySize;
+    this.keepAliveMs = keepAliveMs;
+    this.compactScale = compactScale;
+    this.sendTimeoutMs = sendTimeoutMs;
+
+    List<Set<Subscription>> slots = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, keepAliveSlots); i++) slots.add(ConcurrentHashMap.newKeySet());
+    this.wheel = List.copyOf(slots);
+    this.wheelTickMs = Math.max(1, keepAliveMs / wheel.size());
+
+    AtomicInteger n = new AtomicInteger();
+    int threads = Math.max(1, sendThreads);
+    this.sendPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread t = new Thread(r, "sse-send-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    this.sendPool.allowCoreThreadTimeOut(true);
+
+    this.evictor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "sse-evict");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /** full = mapa completo por tick; delta = snapshot al conectar y luego solo cambios */
+  public enum Mode {
+    FULL, DELTA;
+
+    public static Mode parse(String raw) {
+      if (raw == null || raw.isBlank()) return FULL;
+      try {
+        return Mode.valueOf(raw.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid mode: " + raw + " (full|delta)");
+      }
+    }
+  }
+
+  /**
+   * json = mapas {símbolo: precio} con ts ISO; compact = arreglos posicionales según el
+   * diccionario de símbolos del hello, ts en epoch-ms y precios enteros escalados.
+   */
+  public enum Format {
+    JSON, COMPACT;
+
+    public static Format parse(String raw) {
+      if (raw == null || raw.isBlank()) return JSON;
+      try {
+        return Format.valueOf(raw.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid format: " + raw + " (json|compact)");
+      }
+    }
   }
 
+  /**
+   * Evento ya serializado; el mismo byte[] se comparte entre todos los clientes del grupo.
+   * conflate=true: si el cliente va atrasado basta con el último (price en mode=full).
+   * id (opcional) es el Last-Event-ID con el que el cliente puede reanudar.
+   */
+  record Frame(String event, String id, byte[] data, boolean conflate) {}
+
   public static class Subscription {
-    public final SseEmitter emitter;
+    public final String apiKey;
+    public final FrameSink sink;
     public final Set<String> symbols;
     public final String fiat;
-
-    public Subscription(SseEmitter emitter, Set<String> symbols, String fiat) {
-      this.emitter = emitter;
+    public final Mode mode;
+    public final Format format;
+
+    // grupo (fiat + mode + format + mismos símbolos) al que pertenece; lo asigna subscribe
+    private Group group;
+
+    // cola de salida: price full se conflaciona (solo importa el último), el resto va en orden
+    private final AtomicReference<Frame> latestPrice = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<Frame> control = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger controlSize = new AtomicInteger();
+    // prices pisados por conflación desde el último envío (cuentan como atraso)
+    private final AtomicInteger conflated = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long overLimitSinceMs;
+    private volatile boolean closed;
+    // send en curso: desde cuándo y en qué hilo (sender se toca bajo synchronized(this))
+    private volatile long sendingSinceMs;
+    private Thread sender;
+    // último envío exitoso (cualquier evento cuenta como keepalive) y slot del wheel
+    private volatile long lastSentAtMs = System.currentTimeMillis();
+    private volatile int wheelSlot;
+
+    public Subscription(String apiKey, FrameSink sink, Set<String> symbols, String fiat, Mode mode, Format format) {
+      this.apiKey = apiKey;
+      this.sink = sink;
       this.symbols = symbols;
       this.fiat = fiat;
+      this.mode = mode;
+      this.format = format;
+    }
+
+    /** Frames que el cliente aún no recibe */
+    public int queueDepth() {
+      return controlSize.get() + (latestPrice.get() != null ? 1 : 0) + conflated.get();
+    }
+  }
+
+  /** Suscripciones con el mismo (fiat, mode, format, set de símbolos) comparten un solo payload por tick */
+  static final class Group {
+    final String key;            // FIAT|MODE|FORMAT|A,B,C (símbolos ordenados)
+    final String fiat;
+    final Mode mode;
+    final Format format;
+    final List<String> symbols;  // ordenados (= diccionario en format=compact)
+    final Set<Subscription> subs = ConcurrentHashMap.newKeySet();
+
+    // mode=delta: últimos precios enviados y secuencia (guardados por synchronized(this))
+    final Map<String, Object> last = new HashMap<>();
+    long seq;
+    boolean seeded;
+
+    Group(String key, String fiat, Mode mode, Format format, List<String> symbols) {
+      this.key = key;
+      this.fiat = fiat;
+      this.mode = mode;
+      this.format = format;
+      this.symbols = symbols;
     }
   }
 
-  // apiKey -> subs
+  // apiKey -> subs (para límites por plan)
   private final ConcurrentHashMap<String, CopyOnWriteArrayList<Subscription>> byKey = new ConcurrentHashMap<>();
 
+  // índice invertido: FIAT -> SYMBOL -> grupos que lo piden
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Group>>> index = new ConcurrentHashMap<>();
+  // FIAT|A,B,C -> grupo
+  private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+  // altas/bajas de grupos e índice (raras comparado con los broadcasts)
+  private final Object indexLock = new Object();
+
+  // demanda FIAT -> SYMBOL -> # suscriptores (bajo indexLock) y su snapshot inmutable;
+  // el snapshot solo se rehace cuando un par (fiat, símbolo) aparece o desaparece
+  private final Map<String, Map<String, Integer>> demandCounts = new HashMap<>();
+  private volatile Map<String, Set<String>> demand = Map.of();
+
+  // ids de evento monótonos (compartidos por todos los fiats) + replay por fiat.
+  // En el cable van como "<epoch>-<n>": epoch es propio de este proceso, así un Last-Event-ID
+  // de antes de un deploy o de otra réplica no se confunde con un tick de aquí
+  private final String idEpoch = Long.toString(System.currentTimeMillis(), 36);
+  private final AtomicLong eventIds = new AtomicLong();
+  private final ConcurrentHashMap<String, ReplayRing> rings = new ConcurrentHashMap<>();
+
   public SseEmitter subscribe(String apiKey, List<String> symbols, String fiat) throws TooManyConnectionsException {
+    return subscribe(apiKey, symbols, fiat, Mode.FULL, Format.JSON, null);
+  }
+
+  /** lastEventId != null: reconexión, se reenvía lo que se perdió (o el último tick) */
+  public SseEmitter subscribe(String apiKey, List<String> symbols, String fiat, Mode mode, Format format, String lastEventId)
+      throws TooManyConnectionsException {
+
+    SseEmitter emitter = new SseEmitter(0L);
+    Subscription sub = open(apiKey, symbols, fiat, mode, format, lastEventId, new SseSink(emitter));
+
+    Runnable cleanup = () -> removeSub(apiKey, sub);
+
+    emitter.onCompletion(cleanup);
+    emitter.onTimeout(cleanup);
+    emitter.onError(e -> cleanup.run());
+
+    return emitter;
+  }
+
+  /**
+   * Alta de una suscripción sobre cualquier transporte (SSE o un canasto de un WebSocket).
+   * Cuenta contra el límite de conexiones del plan igual que un stream SSE.
+   */
+  public Subscription open(String apiKey, List<String> symbols, String fiat, Mode mode, Format format,
+                           String lastEventId, FrameSink sink) throws TooManyConnectionsException {
 
     ApiKeyStore.Plan plan = store.getPlan(apiKey);
     if (plan == null) {
@@ -59,8 +288,8 @@ public class PriceBroadcaster {
 
     String fiatUpper = (fiat == null || fiat.isBlank()) ? "USD" : fiat.trim().toUpperCase();
 
-    SseEmitter emitter = new SseEmitter(0L);
-    Subscription sub = new Subscription(emitter, symSet, fiatUpper);
+    Subscription sub = new Subscription(apiKey, sink, symSet, fiatUpper,
+      mode == null ? Mode.FULL : mode, format == null ? Format.JSON : format);
 
     // ✅ Check+Add atómico (evita race conditions si abren 2 tabs a la vez)
     synchronized (list) {
@@ -70,31 +299,152 @@ public class PriceBroadcaster {
       list.add(sub);
     }
 
-    Runnable cleanup = () -> removeSub(apiKey, sub);
+    sub.wheelSlot = wheelSlot(sub.lastSentAtMs);
+    wheel.get(sub.wheelSlot).add(sub);
+
+    // hello event (primero en la cola, antes de snapshot/price)
+    Map<String, Object> hello = new LinkedHashMap<>();
+    hello.put("ok", true);
+    hello.put("plan", plan.name());
+    hello.put("fiat", sub.fiat);
+    hello.put("symbols", sub.symbols);
+    hello.put("mode", sub.mode.name().toLowerCase());
+    hello.put("format", sub.format.name().toLowerCase());
+    if (sub.format == Format.COMPACT) {
+      // posición i de "p"/"c" en los frames = dict[i]; precio = entero / 10^scale
+      // (o el string decimal tal cual cuando el entero pasaría de 2^53)
+      hello.put("dict", sortedSymbols(sub));
+      hello.put("scale", compactScale);
+    }
+    hello.put("ts", OffsetDateTime.now().toString());
+    enqueue(sub, new Frame("hello", null, json(hello), false));
+
+    // replay + alta bajo el lock del ring: broadcastPrices agrega al ring y reparte bajo el
+    // mismo lock, así ningún tick se pierde ni se duplica entre el replay y lo en vivo
+    ReplayRing ring = ring(sub.fiat);
+    synchronized (ring) {
+      if (lastEventId != null && !lastEventId.isBlank() && sub.mode == Mode.FULL) {
+        replay(sub, ring, lastEventId);
+      }
+      joinGroup(sub, ring);
+    }
 
-    emitter.onCompletion(cleanup);
-    emitter.onTimeout(cleanup);
-    emitter.onError(e -> cleanup.run());
+    return sub;
+  }
 
-    // hello event
+  /** Baja explícita (unsubscribe de WebSocket o conexión cerrada) */
+  public void close(Subscription sub) {
+    removeSub(sub.apiKey, sub);
+  }
+
+  private ReplayRing ring(String fiat) {
+    return rings.computeIfAbsent(fiat, k -> new ReplayRing(replaySize));
+  }
+
+  /**
+   * Ticks posteriores a lastEventId; si ya no están (o son demasiados) solo el último.
+   * Un id de otro proceso (deploy anterior, otra réplica) o ilegible cuenta como perdido.
+   */
+  private void replay(Subscription sub, ReplayRing ring, String lastEventId) {
+    Long lastId = localEventId(lastEventId);
+    List<ReplayRing.Tick> missed = lastId == null ? null : ring.after(lastId);
+    if (missed == null || missed.size() >= maxQueue) {
+      ReplayRing.Tick latest = ring.latest();
+      missed = (latest == null || (lastId != null && latest.id() == lastId)) ? List.of() : List.of(latest);
+    }
+
+    List<String> sorted = sortedSymbols(sub);
+    for (ReplayRing.Tick t : missed) {
+      if (ordered(sorted, t.prices()).isEmpty()) continue;
+      enqueue(sub, new Frame("price", wireId(t.id()), fullFrame(sub.format, sorted, t.payload(), t.prices()), false));
+    }
+  }
+
+  private String wireId(long id) {
+    return idEpoch + "-" + id;
+  }
+
+  /** n de "<epoch>-<n>" si epoch es el de este proceso; null en cualquier otro caso */
+  private Long localEventId(String raw) {
+    String v = raw.trim();
+    int dash = v.indexOf('-');
+    if (dash <= 0 || !v.substring(0, dash).equals(idEpoch)) return null;
     try {
-      emitter.send(SseEmitter.event()
-        .name("hello")
-        .data(Map.of(
-          "ok", true,
-          "plan", plan.name(),
-          "fiat", sub.fiat,
-          "symbols", sub.symbols,
-          "ts", OffsetDateTime.now().toString()
-        )));
-    } catch (IOException ignored) {
-      cleanup.run();
+      return Long.parseLong(v.substring(dash + 1));
+    } catch (NumberFormatException e) {
+      return null;
     }
+  }
 
-    return emitter;
+  private static List<String> sortedSymbols(Subscription sub) {
+    return sub.symbols.stream().sorted().toList();
+  }
+
+  private void joinGroup(Subscription sub, ReplayRing ring) {
+    List<String> sorted = sortedSymbols(sub);
+    String key = sub.fiat + "|" + sub.mode + "|" + sub.format + "|" + String.join(",", sorted);
+
+    synchronized (indexLock) {
+      if (sub.closed) return;
+
+      Group g = groups.computeIfAbsent(key, k -> {
+        Group ng = new Group(k, sub.fiat, sub.mode, sub.format, sorted);
+        var bySymbol = index.computeIfAbsent(sub.fiat, f -> new ConcurrentHashMap<>());
+        for (String s : sorted) {
+          bySymbol.computeIfAbsent(s, x -> ConcurrentHashMap.newKeySet()).add(ng);
+        }
+        return ng;
+      });
+      sub.group = g;
+      addDemand(g.fiat, g.symbols);
+
+      if (g.mode != Mode.DELTA) {
+        g.subs.add(sub);
+        return;
+      }
+
+      // delta: snapshot + alta bajo el lock del grupo, así no se pierde ni duplica ningún cambio
+      synchronized (g) {
+        if (!g.seeded) {
+          g.last.putAll(priceService.getCached(g.symbols, g.fiat).prices);
+          g.seeded = true;
+        }
+        ReplayRing.Tick latest = ring.latest();
+        enqueue(sub, new Frame("snapshot", latest == null ? null : wireId(latest.id()), snapshotFrame(g), false));
+        g.subs.add(sub);
+      }
+    }
+  }
+
+  private void leaveGroup(Subscription sub) {
+    synchronized (indexLock) {
+      Group g = sub.group;
+      if (g == null) return;
+      sub.group = null;
+
+      g.subs.remove(sub);
+      removeDemand(g.fiat, g.symbols);
+      if (!g.subs.isEmpty()) return;
+
+      // último del grupo: sácalo del índice
+      groups.remove(g.key, g);
+      var bySymbol = index.get(g.fiat);
+      if (bySymbol == null) return;
+      for (String s : g.symbols) {
+        Set<Group> set = bySymbol.get(s);
+        if (set == null) continue;
+        set.remove(g);
+        if (set.isEmpty()) bySymbol.remove(s);
+      }
+      if (bySymbol.isEmpty()) index.remove(g.fiat);
+    }
   }
 
   private void removeSub(String apiKey, Subscription sub) {
+    sub.closed = true;
+    wheel.get(sub.wheelSlot).remove(sub);
+    leaveGroup(sub);
+
     CopyOnWriteArrayList<Subscription> list = byKey.get(apiKey);
     if (list == null) return;
 
@@ -105,77 +455,413 @@ public class PriceBroadcaster {
     }
   }
 
-  /** Para el poller: qué piden los clientes ahorita (para optimizar llamadas) */
-  public Map<String, Set<String>> snapshotRequested() {
+  private void addDemand(String fiat, List<String> symbols) {
+    Map<String, Integer> bySymbol = demandCounts.computeIfAbsent(fiat, k -> new HashMap<>());
+    boolean changed = false;
+    for (String s : symbols) {
+      if (bySymbol.merge(s, 1, Integer::sum) == 1) changed = true;
+    }
+    if (changed) publishDemand();
+  }
+
+  private void removeDemand(String fiat, List<String> symbols) {
+    Map<String, Integer> bySymbol = demandCounts.get(fiat);
+    if (bySymbol == null) return;
+
+    boolean changed = false;
+    for (String s : symbols) {
+      // merge con null borra la entrada al llegar a 0
+      if (bySymbol.merge(s, -1, (a, b) -> a + b == 0 ? null : a + b) == null) changed = true;
+    }
+    if (bySymbol.isEmpty()) demandCounts.remove(fiat);
+    if (changed) publishDemand();
+  }
+
+  private void publishDemand() {
     Map<String, Set<String>> out = new HashMap<>();
+    demandCounts.forEach((fiat, bySymbol) -> out.put(fiat, Set.copyOf(bySymbol.keySet())));
+    demand = Map.copyOf(out);
+  }
+
+  /** Para el poller: qué piden los clientes ahorita (snapshot inmutable, sin copiar nada) */
+  public Map<String, Set<String>> snapshotRequested() {
+    return demand;
+  }
+
+  /**
+   * Broadcast ya con (fiat + precios): solo toca los grupos que piden alguno de
+   * esos símbolos (índice invertido). Cada grupo serializa su frame una vez y los
+   * mismos bytes se escriben a todos sus emitters. Cada tick lleva un id monótono y
+   * queda en el ring del fiat para reanudar con Last-Event-ID.
+   */
+  public void broadcastPrices(String fiat, Map<String, Object> payload, Map<String, ?> pricesBySymbol) {
+    if (pricesBySymbol.isEmpty()) return;
+    String F = fiat.toUpperCase();
+
+    ReplayRing ring = ring(F);
+    synchronized (ring) {
+      long id = eventIds.incrementAndGet();
+      ring.add(new ReplayRing.Tick(id, Map.copyOf(payload), new HashMap<>(pricesBySymbol)));
+      fanOut(F, wireId(id), payload, pricesBySymbol);
+    }
+  }
+
+  private void fanOut(String F, String id, Map<String, Object> payload, Map<String, ?> pricesBySymbol) {
+    var bySymbol = index.get(F);
+    if (bySymbol == null) return;
+
+    Set<Group> affected = new HashSet<>();
+    for (String s : pricesBySymbol.keySet()) {
+      Set<Group> gs = bySymbol.get(s);
+      if (gs != null) affected.addAll(gs);
+    }
+
+    for (Group g : affected) {
+      if (g.mode == Mode.DELTA) {
+        broadcastDelta(g, id, payload, pricesBySymbol);
+        continue;
+      }
+
+      // filtra solo símbolos que pidió ese grupo
+      Frame frame = new Frame("price", id, fullFrame(g.format, g.symbols, payload, pricesBySymbol), true);
+
+      for (Subscription sub : g.subs) {
+        enqueue(sub, frame);
+      }
+    }
+  }
+
+  /** Solo los símbolos cuyo precio cambió, con seq consecutivo por grupo (hueco = se perdió algo) */
+  private void broadcastDelta(Group g, String id, Map<String, Object> payload, Map<String, ?> pricesBySymbol) {
+    synchronized (g) {
+      Map<String, Object> changed = new LinkedHashMap<>();
+      for (String s : g.symbols) {
+        Object v = pricesBySymbol.get(s);
+        if (v != null && !samePrice(v, g.last.get(s))) changed.put(s, v);
+      }
+      if (changed.isEmpty()) return;
+
+      g.last.putAll(changed);
+      g.seq++;
+
+      Frame frame = new Frame("price", id, deltaFrame(g, payload, changed), false);
+
+      for (Subscription sub : g.subs) {
+        enqueue(sub, frame);
+      }
+    }
+  }
+
+  /** 1.0 y 1.00 son el mismo precio (BigDecimal.equals compara también la escala) */
+  private static boolean samePrice(Object a, Object b) {
+    if (a instanceof BigDecimal x && b instanceof BigDecimal y) return x.compareTo(y) == 0;
+    return Objects.equals(a, b);
+  }
+
+  private byte[] fullFrame(Format format, List<String> symbols, Map<String, Object> payload, Map<String, ?> prices) {
+    if (format == Format.COMPACT) {
+      return json(Map.of(
+        "t", epochMs(payload.get("ts")),
+        "src", payload.get("source"),
+        "p", positional(symbols, prices)
+      ));
+    }
+    return json(Map.of(
+      "ts", payload.get("ts"),
+      "fiat", payload.get("fiat"),
+      "source", payload.get("source"),
+      "prices", ordered(symbols, prices)
+    ));
+  }
 
-    for (var entry : byKey.entrySet()) {
-      for (Subscription sub : entry.getValue()) {
-        if (sub == null) continue;
-        out.computeIfAbsent(sub.fiat, k -> new LinkedHashSet<>()).addAll(sub.symbols);
+  private byte[] deltaFrame(Group g, Map<String, Object> payload, Map<String, Object> changed) {
+    if (g.format == Format.COMPACT) {
+      // pares planos [i, precio, i, precio, ...]
+      List<Object> c = new ArrayList<>(changed.size() * 2);
+      for (int i = 0; i < g.symbols.size(); i++) {
+        Object v = changed.get(g.symbols.get(i));
+        if (v == null) continue;
+        c.add(i);
+        c.add(scaled(v));
       }
+      return json(Map.of(
+        "t", epochMs(payload.get("ts")),
+        "src", payload.get("source"),
+        "q", g.seq,
+        "c", c
+      ));
+    }
+    return json(Map.of(
+      "ts", payload.get("ts"),
+      "fiat", payload.get("fiat"),
+      "source", payload.get("source"),
+      "seq", g.seq,
+      "prices", changed
+    ));
+  }
+
+  private byte[] snapshotFrame(Group g) {
+    if (g.format == Format.COMPACT) {
+      return json(Map.of(
+        "t", System.currentTimeMillis(),
+        "q", g.seq,
+        "p", positional(g.symbols, g.last)
+      ));
+    }
+    return json(Map.of(
+      "ts", OffsetDateTime.now().toString(),
+      "fiat", g.fiat,
+      "seq", g.seq,
+      "prices", ordered(g.symbols, g.last)
+    ));
+  }
+
+  /** Un valor por símbolo del diccionario (null si no hay precio) */
+  private List<Object> positional(List<String> symbols, Map<String, ?> prices) {
+    List<Object> out = new ArrayList<>(symbols.size());
+    for (String s : symbols) {
+      Object v = prices.get(s);
+      out.add(v == null ? null : scaled(v));
     }
     return out;
   }
 
-  /** Broadcast ya con (fiat + precios) y aquí filtramos por cliente */
-  public void broadcastPrices(String fiat, Map<String, Object> payload, Map<String, ?> pricesBySymbol) {
-    String F = fiat.toUpperCase();
+  /**
+   * Entero = precio * 10^scale mientras quepa exacto en un Number de JS (|x| <= 2^53);
+   * si no, el precio decimal tal cual como string (nada de longValue() que da la vuelta).
+   */
+  private Object scaled(Object v) {
+    BigDecimal bd = (v instanceof BigDecimal b) ? b : new BigDecimal(v.toString());
+    BigDecimal s = bd.movePointRight(compactScale).setScale(0, RoundingMode.HALF_UP);
+    if (s.abs().compareTo(MAX_SAFE_SCALED) <= 0) return s.longValueExact();
+    return bd.toPlainString();
+  }
 
-    for (var entry : byKey.entrySet()) {
-      String apiKey = entry.getKey();
-      CopyOnWriteArrayList<Subscription> subs = entry.getValue();
+  private static long epochMs(Object ts) {
+    if (ts instanceof String iso) {
+      try {
+        return OffsetDateTime.parse(iso).toInstant().toEpochMilli();
+      } catch (DateTimeParseException ignored) {
+        // cae al reloj local
+      }
+    }
+    return System.currentTimeMillis();
+  }
 
-      for (Subscription sub : subs) {
-        if (!sub.fiat.equalsIgnoreCase(F)) continue;
+  private static Map<String, Object> ordered(List<String> symbols, Map<String, ?> prices) {
+    Map<String, Object> out = new LinkedHashMap<>();
+    for (String s : symbols) {
+      Object v = prices.get(s);
+      if (v != null) out.put(s, v);
+    }
+    return out;
+  }
 
-        // filtra solo símbolos que pidió ese cliente
-        Map<String, Object> filtered = new LinkedHashMap<>();
-        for (String s : sub.symbols) {
-          Object v = pricesBySymbol.get(s);
-          if (v != null) filtered.put(s, v);
-        }
+  /**
+   * Keepalive automático (Railway/edge proxies lo agradecen).
+   * Hashed wheel de keepalive-ms / slots por tick: cada cliente está en el slot del tick
+   * anterior a su vencimiento (último envío + keepalive-ms) y se mueve de slot con cada
+   * envío, así nunca pasa más de keepalive-ms sin recibir nada y cada tick solo revisa a
+   * los que vencen. Un price ya cuenta como keepalive.
+   */
+  // mismo clamp que el constructor (slots >= 1) y el rate nunca en 0
+  @Scheduled(fixedRateString = "#{T(java.lang.Math).max(1, ${cryptolink.sse.keepalive-ms:25000} / T(java.lang.Math).max(1, ${cryptolink.sse.keepalive-slots:10}))}")
+  public void keepAliveTick() {
+    keepAliveTick(System.currentTimeMillis());
+  }
 
-        try {
-          sub.emitter.send(SseEmitter.event().name("price").data(Map.of(
-            "ts", payload.get("ts"),
-            "fiat", payload.get("fiat"),
-            "source", payload.get("source"),
-            "prices", filtered
-          )));
-        } catch (IOException e) {
-          // ✅ cleanup completo
-          removeSub(apiKey, sub);
+  synchronized void keepAliveTick(long now) {
+    long tick = now / wheelTickMs;
+    // si el scheduler se atrasó se revisan también los ticks saltados (a lo más una vuelta)
+    long from = wheelTick < 0 ? tick : Math.max(wheelTick + 1, tick - wheel.size() + 1);
+    wheelTick = tick;
+
+    Frame ping = null;
+    for (long t = from; t <= tick; t++) {
+      for (Subscription sub : wheel.get((int) Math.floorMod(t, (long) wheel.size()))) {
+        // mismo slot pero vence en otra vuelta
+        if (dueTick(sub.lastSentAtMs) > tick) continue;
+
+        // un solo payload por tick del wheel
+        if (ping == null) {
+          ping = new Frame("ping", null, json(Map.of(
+            "ok", true,
+            "ts", OffsetDateTime.now().toString()
+          )), false);
         }
+        enqueue(sub, ping);
       }
     }
   }
 
-  /** Keepalive automático (Railway/edge proxies lo agradecen) */
-  @Scheduled(fixedRateString = "${cryptolink.sse.keepalive-ms:25000}")
-  public void keepAlive() {
-    broadcastPing();
+  /** Tick en el que toca revisar a quien envió por última vez en lastSentAtMs (uno antes de vencer) */
+  private long dueTick(long lastSentAtMs) {
+    return (lastSentAtMs + keepAliveMs) / wheelTickMs - 1;
+  }
+
+  private int wheelSlot(long lastSentAtMs) {
+    return (int) Math.floorMod(dueTick(lastSentAtMs), (long) wheel.size());
+  }
+
+  /** Tras cada envío: el vencimiento se recorre y el cliente cambia de slot */
+  private void reslot(Subscription sub) {
+    int slot = wheelSlot(sub.lastSentAtMs);
+    int old = sub.wheelSlot;
+    if (slot == old) return;
+
+    wheel.get(old).remove(sub);
+    sub.wheelSlot = slot;
+    wheel.get(slot).add(sub);
+    // removeSub pudo leer el slot viejo mientras tanto
+    if (sub.closed) wheel.get(slot).remove(sub);
+  }
+
+  /** Encola sin bloquear; el envío real lo hace drain() en el sendPool */
+  private void enqueue(Subscription sub, Frame frame) {
+    if (sub.closed) return;
+
+    if (frame.conflate()) {
+      if (sub.latestPrice.getAndSet(frame) != null) sub.conflated.incrementAndGet();
+    } else if (sub.controlSize.get() < maxQueue) {
+      sub.control.offer(frame);
+      sub.controlSize.incrementAndGet();
+    } else {
+      dropped.incrementAndGet();
+      // un ping viejo no hace falta; cualquier otro frame perdido (un delta con su seq, el
+      // snapshot, el replay) deja al cliente desincronizado para siempre: se saca y al
+      // reconectar recibe snapshot / replay por Last-Event-ID
+      if (!"ping".equals(frame.event())) {
+        evict(sub);
+        return;
+      }
+    }
+
+    if (overLimitTooLong(sub)) {
+      evict(sub);
+      return;
+    }
+    scheduleDrain(sub);
   }
 
-  public void broadcastPing() {
+  private boolean overLimitTooLong(Subscription sub) {
+    if (sub.queueDepth() <= maxQueue) {
+      sub.overLimitSinceMs = 0;
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    if (sub.overLimitSinceMs == 0) {
+      sub.overLimitSinceMs = now;
+      return false;
+    }
+    return now - sub.overLimitSinceMs > evictAfterMs;
+  }
 
-    for (var entry : byKey.entrySet()) {
-      String apiKey = entry.getKey();
-      CopyOnWriteArrayList<Subscription> subs = entry.getValue();
+  /**
+   * Marca la suscripción como cerrada (ya no recibe frames) y deja la baja real al evictor:
+   * removeSub toma indexLock y aquí se puede llegar con el lock de un grupo tomado.
+   */
+  private void evict(Subscription sub) {
+    synchronized (sub) {
+      if (sub.closed) return;
+      sub.closed = true;
+      // un send bloqueado no se entera del close(); el interrupt lo despierta
+      if (sub.sender != null) sub.sender.interrupt();
+    }
+    evicted.incrementAndGet();
+    log.warn("Evicting slow stream consumer fiat={} symbols={} queueDepth={}", sub.fiat, sub.symbols.size(), sub.queueDepth());
+    evictor.execute(() -> {
+      removeSub(sub.apiKey, sub);
+      sub.sink.close();
+    });
+  }
 
+  /** Saca a quien lleva más de send-timeout-ms atorado en un solo send */
+  @Scheduled(fixedDelayString = "${cryptolink.sse.send-check-ms:1000}")
+  public void checkStuckSends() {
+    long now = System.currentTimeMillis();
+    for (CopyOnWriteArrayList<Subscription> subs : byKey.values()) {
       for (Subscription sub : subs) {
-        try {
-          sub.emitter.send(SseEmitter.event().name("ping").data(Map.of(
-            "ok", true,
-            "ts", OffsetDateTime.now().toString()
-          )));
-        } catch (IOException e) {
-          removeSub(apiKey, sub);
+        long since = sub.sendingSinceMs;
+        if (since != 0 && now - since > sendTimeoutMs) evict(sub);
+      }
+    }
+  }
+
+  private void scheduleDrain(Subscription sub) {
+    if (sub.draining.compareAndSet(false, true)) {
+      sendPool.execute(() -> drain(sub));
+    }
+  }
+
+  private void drain(Subscription sub) {
+    synchronized (sub) {
+      sub.sender = Thread.currentThread();
+    }
+    try {
+      while (!sub.closed) {
+        Frame f = sub.control.poll();
+        if (f != null) {
+          sub.controlSize.decrementAndGet();
+        } else {
+          f = sub.latestPrice.getAndSet(null);
+          if (f == null) break;
+          sub.conflated.set(0);
         }
+        sub.sendingSinceMs = System.currentTimeMillis();
+        sub.sink.send(f.event(), f.id(), f.data());
+        sub.sendingSinceMs = 0;
+        sub.lastSentAtMs = System.currentTimeMillis();
+        reslot(sub);
+      }
+    } catch (IOException | IllegalStateException e) {
+      // ✅ cleanup completo; el sink también se entera (WebSocket: quita el canasto de su conexión)
+      removeSub(sub.apiKey, sub);
+      sub.sink.close();
+    } finally {
+      sub.sendingSinceMs = 0;
+      synchronized (sub) {
+        sub.sender = null;
+        // un interrupt de evict que llegó tarde no debe contaminar el hilo del pool
+        Thread.interrupted();
       }
+      sub.draining.set(false);
+    }
+
+    // algo llegó entre el último poll y soltar el flag
+    if (!sub.closed && (sub.controlSize.get() > 0 || sub.latestPrice.get() != null)) {
+      scheduleDrain(sub);
     }
   }
 
+  /** Transporte SSE: un evento por frame, data ya es JSON */
+  private static final class SseSink implements FrameSink {
+    private final SseEmitter emitter;
+
+    SseSink(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    @Override
+    public void send(String event, String id, byte[] data) throws IOException {
+      SseEmitter.SseEventBuilder builder = SseEmitter.event().name(event);
+      if (id != null) builder.id(id);
+      emitter.send(builder.data(data, MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void close() {
+      try {
+        emitter.complete();
+      } catch (Exception ignored) {
+        // ya estaba cerrado
+      }
+    }
+  }
+
+  private static byte[] json(Object data) {
+    return JSON.toJson(data).getBytes(StandardCharsets.UTF_8);
+  }
+
   public static class TooManyConnectionsException extends Exception {
     public final int max;
     public TooManyConnectionsException(int max) { this.max = max; }
@@ -184,4 +870,22 @@ public class PriceBroadcaster {
   public int activeConnections() {
     return byKey.values().stream().mapToInt(List::size).sum();
   }
+
+  /** Frames pendientes de enviar sumando todos los clientes */
+  public int queuedFrames() {
+    int total = 0;
+    for (CopyOnWriteArrayList<Subscription> subs : byKey.values()) {
+      for (Subscription sub : subs) total += sub.queueDepth();
+    }
+    return total;
+  }
+
+  public long evictedTotal() {
+    return evicted.get();
+  }
+
+  /** Frames que no cupieron en la cola de control de un cliente */
+  public long droppedTotal() {
+    return dropped.get();
+  }
 }
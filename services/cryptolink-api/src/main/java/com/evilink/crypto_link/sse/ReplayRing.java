@@ -0,0 +1,50 @@
+package com.evilink.crypto_link.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Últimos N ticks de un fiat para reanudar streams con Last-Event-ID.
+ * No es thread-safe por sí solo: PriceBroadcaster lo usa dentro de synchronized(ring).
+ */
+final class ReplayRing {
+
+  /** Un broadcast tal como salió: id del evento, payload base y precios (copia) */
+  record Tick(long id, Map<String, Object> payload, Map<String, Object> prices) {}
+
+  private final Tick[] buf;
+  private int next;
+  private int size;
+
+  ReplayRing(int capacity) {
+    this.buf = new Tick[Math.max(1, capacity)];
+  }
+
+  void add(Tick t) {
+    buf[next] = t;
+    next = (next + 1) % buf.length;
+    if (size < buf.length) size++;
+  }
+
+  Tick latest() {
+    if (size == 0) return null;
+    return buf[(next - 1 + buf.length) % buf.length];
+  }
+
+  /**
+   * Ticks posteriores a lastId, del más viejo al más nuevo.
+   * null si lastId ya no está en el buffer (el cliente se perdió demasiado).
+   */
+  List<Tick> after(long lastId) {
+    int start = (next - size + buf.length) % buf.length;
+    for (int i = 0; i < size; i++) {
+      if (buf[(start + i) % buf.length].id() != lastId) continue;
+
+      List<Tick> out = new ArrayList<>(size - i - 1);
+      for (int j = i + 1; j < size; j++) out.add(buf[(start + j) % buf.length]);
+      return out;
+    }
+    return null;
+  }
+}
@@ -19,10 +19,14 @@ public class TrendService {
     }
 
     public List<TrendRow> getTrends(List<String> symbols, String fiat) {
+        return getTrends(symbols, fiat, PriceHistoryCache.Window.RAW);
+    }
+
+    public List<TrendRow> getTrends(List<String> symbols, String fiat, PriceHistoryCache.Window window) {
         List<TrendRow> out = new ArrayList<>();
 
         for (String symbol : symbols) {
-            List<PriceHistoryCache.Point> points = historyCache.get(fiat, symbol);
+            List<PriceHistoryCache.Point> points = historyCache.get(fiat, symbol, window);
             if (points == null || points.size() < 3) {
                BigDecimal lastValue = null;
                if (points != null && !points.isEmpty()) {
@@ -1,6 +1,6 @@
 package com.evilink.crypto_link.validation;
 
-import com.evilink.crypto_link.service.SymbolService;
+import com.evilink.crypto_link.service.SymbolRegistry;
 import com.evilink.crypto_link.service.FiatService;
 import org.springframework.stereotype.Component;
 
@@ -10,17 +10,17 @@ import java.util.stream.Collectors;
 @Component
 public class MarketValidator {
 
-  private final SymbolService symbols;
+  private final SymbolRegistry symbols;
   private final FiatService fiats;
 
   // defaults “por si falla el refresh” o mientras levanta la app
-  private volatile Set<String> cachedSymbols = Set.of("BTC", "ETH");
+  private static final Set<String> DEFAULT_SYMBOLS = Set.of("BTC", "ETH");
   private volatile Set<String> cachedFiats   = Set.of("USD", "MXN", "EUR");
   private volatile long cachedAtMs = 0;
 
   private final long ttlMs = 30_000; // 30s cache
 
-  public MarketValidator(SymbolService symbols, FiatService fiats) {
+  public MarketValidator(SymbolRegistry symbols, FiatService fiats) {
     this.symbols = symbols;
     this.fiats = fiats;
   }
@@ -34,13 +34,6 @@ public class MarketValidator {
       now = System.currentTimeMillis();
       if (now - cachedAtMs < ttlMs) return;
 
-      Set<String> s = symbols.listActive().stream()
-          .filter(Objects::nonNull)
-          .map(String::trim)
-          .filter(x -> !x.isBlank())
-          .map(String::toUpperCase)
-          .collect(Collectors.toSet());
-
       Set<String> f = fiats.listActiveSet().stream()
           .filter(Objects::nonNull)
           .map(String::trim)
@@ -48,16 +41,21 @@ public class MarketValidator {
           .map(String::toUpperCase)
           .collect(Collectors.toSet());
 
-      if (!s.isEmpty()) cachedSymbols = s;
       if (!f.isEmpty()) cachedFiats = f;
 
       cachedAtMs = now;
     }
   }
 
+  /** Símbolos salen del SymbolRegistry (memoria); los fiats siguen con su cache de 30s */
+  private Set<String> activeSymbols() {
+    Set<String> s = symbols.symbolToCoingeckoId().keySet();
+    return s.isEmpty() ? DEFAULT_SYMBOLS : s;
+  }
+
   public List<String> allowedSymbols() {
-    refreshIfNeeded();
-    return cachedSymbols.stream().sorted().toList();
+    List<String> s = symbols.activeSymbols();
+    return s.isEmpty() ? DEFAULT_SYMBOLS.stream().sorted().toList() : s;
   }
 
   public List<String> allowedFiats() {
@@ -85,8 +83,6 @@ public class MarketValidator {
 
   /** Valida lista de símbolos contra lo que hay en DB/cache */
   public List<String> normalizeSymbols(List<String> input) {
-    refreshIfNeeded();
-
     if (input == null || input.isEmpty()) return List.of("BTC", "ETH");
 
     // normaliza + quita duplicados conservando orden
@@ -100,8 +96,9 @@ public class MarketValidator {
     if (normalized.isEmpty()) return List.of("BTC", "ETH");
 
     // valida
+    Set<String> active = activeSymbols();
     List<String> invalid = normalized.stream()
-        .filter(s -> !cachedSymbols.contains(s))
+        .filter(s -> !active.contains(s))
         .toList();
 
     if (!invalid.isEmpty()) {
@@ -0,0 +1,49 @@
+package com.evilink.crypto_link.ws;
+
+import com.evilink.crypto_link.security.ApiKeyFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * El handshake es un GET normal, así que ApiKeyFilter ya lo autenticó (x-api-key o ?token=).
+ * Aquí solo se pasan apiKey/plan de los atributos del request a los de la sesión WebSocket.
+ */
+public class ApiKeyHandshakeInterceptor implements HandshakeInterceptor {
+
+  @Override
+  public boolean beforeHandshake(ServerHttpRequest request,
+                                 ServerHttpResponse response,
+                                 WebSocketHandler wsHandler,
+                                 Map<String, Object> attributes) {
+
+    if (!(request instanceof ServletServerHttpRequest servlet)) {
+      response.setStatusCode(HttpStatus.UNAUTHORIZED);
+      return false;
+    }
+
+    Object apiKey = servlet.getServletRequest().getAttribute(ApiKeyFilter.REQ_ATTR_API_KEY);
+    Object plan = servlet.getServletRequest().getAttribute(ApiKeyFilter.REQ_ATTR_PLAN);
+    if (apiKey == null || plan == null) {
+      response.setStatusCode(HttpStatus.UNAUTHORIZED);
+      return false;
+    }
+
+    attributes.put(ApiKeyFilter.REQ_ATTR_API_KEY, apiKey);
+    attributes.put(ApiKeyFilter.REQ_ATTR_PLAN, plan);
+    return true;
+  }
+
+  @Override
+  public void afterHandshake(ServerHttpRequest request,
+                             ServerHttpResponse response,
+                             WebSocketHandler wsHandler,
+                             Exception exception) {
+    // nada
+  }
+}
@@ -0,0 +1,292 @@
+package com.evilink.crypto_link.ws;
+
+import com.evilink.crypto_link.security.ApiKeyFilter;
+import com.evilink.crypto_link.security.ApiKeyStore;
+import com.evilink.crypto_link.sse.FrameSink;
+import com.evilink.crypto_link.sse.PriceBroadcaster;
+import com.evilink.crypto_link.validation.MarketValidator;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * /v1/ws/prices: varios canastos (fiat + símbolos) sobre una sola conexión.
+ *
+ * Cliente -> servidor:
+ *   {"op":"subscribe","id":"b1","symbols":"BTC,ETH","fiat":"USD","mode":"delta","format":"compact"}
+ *   {"op":"unsubscribe","id":"b1"}
+ * Servidor -> cliente (mismos eventos y payloads que el SSE):
+ *   {"sub":"b1","event":"hello|snapshot|price|ping","id":"<epoch>-42","data":{...}}
+ *   {"sub":"b1","event":"error","data":{"ok":false,"error":"..."}}
+ *
+ * Repetir subscribe con el mismo id reemplaza ese canasto. Cada canasto cuenta como un
+ * stream contra el límite del plan.
+ */
+@Component
+public class PriceWebSocketHandler extends TextWebSocketHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(PriceWebSocketHandler.class);
+  private static final Gson JSON = new Gson();
+
+  private final PriceBroadcaster broadcaster;
+  private final MarketValidator validator;
+  private final int sendTimeLimitMs;
+  private final int bufferSizeLimit;
+
+  // sessionId -> conexión
+  private final ConcurrentHashMap<String, Conn> conns = new ConcurrentHashMap<>();
+
+  public PriceWebSocketHandler(PriceBroadcaster broadcaster,
+                               MarketValidator validator,
+                               @Value("${cryptolink.ws.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                               @Value("${cryptolink.ws.buffer-size-limit:524288}") int bufferSizeLimit) {
+    this.broadcaster = broadcaster;
+    this.validator = validator;
+    this.sendTimeLimitMs = sendTimeLimitMs;
+    this.bufferSizeLimit = bufferSizeLimit;
+  }
+
+  private static final class Conn {
+    final WebSocketSession session;   // decorada: envíos concurrentes desde varios canastos
+    final WebSocketSession raw;       // la real, para cerrarla cuando la decorada ya no envía
+    final String apiKey;
+    final ApiKeyStore.Plan plan;
+    final Map<String, PriceBroadcaster.Subscription> baskets = new ConcurrentHashMap<>();
+
+    Conn(WebSocketSession session, WebSocketSession raw, String apiKey, ApiKeyStore.Plan plan) {
+      this.session = session;
+      this.raw = raw;
+      this.apiKey = apiKey;
+      this.plan = plan;
+    }
+  }
+
+  @Override
+  public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+    String apiKey = (String) session.getAttributes().get(ApiKeyFilter.REQ_ATTR_API_KEY);
+    ApiKeyStore.Plan plan = (ApiKeyStore.Plan) session.getAttributes().get(ApiKeyFilter.REQ_ATTR_PLAN);
+    if (apiKey == null || plan == null) {
+      session.close(CloseStatus.POLICY_VIOLATION);
+      return;
+    }
+
+    var decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit);
+    conns.put(session.getId(), new Conn(decorated, session, apiKey, plan));
+  }
+
+  @Override
+  protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+    Conn conn = conns.get(session.getId());
+    if (conn == null) return;
+
+    JsonObject msg;
+    try {
+      msg = JsonParser.parseString(message.getPayload()).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      sendError(conn, null, "Invalid JSON message");
+      return;
+    }
+
+    String op;
+    String id;
+    try {
+      op = text(msg, "op");
+      id = text(msg, "id");
+    } catch (IllegalArgumentException e) {
+      sendError(conn, null, e.getMessage());
+      return;
+    }
+    if (id == null || id.isBlank()) {
+      sendError(conn, null, "Missing id");
+      return;
+    }
+
+    if ("subscribe".equals(op)) {
+      subscribe(conn, id, msg);
+    } else if ("unsubscribe".equals(op)) {
+      PriceBroadcaster.Subscription old = conn.baskets.remove(id);
+      if (old != null) broadcaster.close(old);
+    } else {
+      sendError(conn, id, "Unknown op: " + op + " (subscribe|unsubscribe)");
+    }
+  }
+
+  private void subscribe(Conn conn, String id, JsonObject msg) throws IOException {
+    List<String> symbols;
+    String fiat;
+    PriceBroadcaster.Mode mode;
+    PriceBroadcaster.Format format;
+    try {
+      symbols = validator.normalizeSymbolsCsv(symbolsCsv(msg));
+      fiat = validator.normalizeFiat(text(msg, "fiat") == null ? "USD" : text(msg, "fiat"));
+      mode = PriceBroadcaster.Mode.parse(text(msg, "mode"));
+      format = PriceBroadcaster.Format.parse(text(msg, "format"));
+    } catch (IllegalArgumentException e) {
+      sendError(conn, id, e.getMessage());
+      return;
+    } catch (ResponseStatusException e) {
+      sendError(conn, id, e.getReason());
+      return;
+    }
+
+    if (symbols.size() > conn.plan.maxSymbols) {
+      sendError(conn, id, "Too many symbols. Max " + conn.plan.maxSymbols + " for plan " + conn.plan.name());
+      return;
+    }
+
+    // mismo id = cambiar el canasto sin reconectar
+    PriceBroadcaster.Subscription old = conn.baskets.remove(id);
+    if (old != null) broadcaster.close(old);
+
+    try {
+      var sub = broadcaster.open(conn.apiKey, symbols, fiat, mode, format, null, new WsSink(conn, id));
+      conn.baskets.put(id, sub);
+      // la conexión se cerró mientras se daba de alta
+      if (!conns.containsKey(conn.session.getId())) broadcaster.close(sub);
+    } catch (PriceBroadcaster.TooManyConnectionsException e) {
+      sendError(conn, id, "Too many streams for this API key. Max " + e.max);
+    }
+  }
+
+  @Override
+  public void handleTransportError(WebSocketSession session, Throwable exception) {
+    log.debug("WebSocket transport error session={} msg={}", session.getId(), exception.getMessage());
+    cleanup(session);
+  }
+
+  @Override
+  public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+    cleanup(session);
+  }
+
+  private void cleanup(WebSocketSession session) {
+    Conn conn = conns.remove(session.getId());
+    if (conn == null) return;
+    for (PriceBroadcaster.Subscription sub : new ArrayList<>(conn.baskets.values())) {
+      broadcaster.close(sub);
+    }
+    conn.baskets.clear();
+  }
+
+  private void sendError(Conn conn, String id, String error) throws IOException {
+    Map<String, Object> env = new LinkedHashMap<>();
+    if (id != null) env.put("sub", id);
+    env.put("event", "error");
+    env.put("data", Map.of("ok", false, "error", error == null ? "Error" : error));
+    sendText(conn, JSON.toJson(env));
+  }
+
+  /** Todo envío pasa por aquí (frames de canastos y errores) */
+  private void sendText(Conn conn, String text) throws IOException {
+    try {
+      conn.session.sendMessage(new TextMessage(text));
+    } catch (SessionLimitExceededException e) {
+      // el decorator ya marcó la sesión y desde aquí descarta en silencio cualquier envío:
+      // sin cerrarla, todos los canastos quedan zombis (parecen vivos y cuentan contra el plan)
+      terminate(conn);
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /** Cliente que no lee: se cae la conexión completa con todos sus canastos */
+  private void terminate(Conn conn) {
+    log.warn("Closing slow WebSocket session={} baskets={}", conn.raw.getId(), conn.baskets.size());
+    cleanup(conn.raw);
+    try {
+      conn.raw.close(CloseStatus.SESSION_NOT_RELIABLE);
+    } catch (IOException | RuntimeException ignored) {
+      // ya estaba cerrada
+    }
+  }
+
+  // "symbols" puede venir como CSV o como arreglo
+  private static String symbolsCsv(JsonObject msg) {
+    JsonElement el = msg.get("symbols");
+    if (el == null || el.isJsonNull()) return "BTC,ETH";
+    if (el.isJsonArray()) {
+      JsonArray arr = el.getAsJsonArray();
+      List<String> out = new ArrayList<>(arr.size());
+      for (JsonElement e : arr) {
+        if (!e.isJsonPrimitive()) throw new IllegalArgumentException("symbols must be a CSV string or an array of strings");
+        out.add(e.getAsString());
+      }
+      return String.join(",", out);
+    }
+    return el.getAsString();
+  }
+
+  /** Valor escalar del campo; un objeto/arreglo donde va un string es error del cliente */
+  private static String text(JsonObject msg, String field) {
+    JsonElement el = msg.get(field);
+    if (el == null || el.isJsonNull()) return null;
+    if (!el.isJsonPrimitive()) throw new IllegalArgumentException("Field '" + field + "' must be a string");
+    return el.getAsString();
+  }
+
+  /** Un canasto sobre la sesión compartida: envuelve cada frame con su id de canasto */
+  private final class WsSink implements FrameSink {
+    private final Conn conn;
+    private final String basketId;
+    private final String prefix;
+
+    WsSink(Conn conn, String basketId) {
+      this.conn = conn;
+      this.basketId = basketId;
+      this.prefix = "{\"sub\":" + JSON.toJson(basketId) + ",\"event\":";
+    }
+
+    @Override
+    public void send(String event, String id, byte[] data) throws IOException {
+      StringBuilder sb = new StringBuilder(prefix.length() + data.length + 48)
+        .append(prefix).append('"').append(event).append('"');
+      if (id != null) sb.append(",\"id\":\"").append(id).append('"');
+      sb.append(",\"data\":").append(new String(data, StandardCharsets.UTF_8)).append('}');
+
+      try {
+        sendText(conn, sb.toString());
+      } catch (RuntimeException e) {
+        // sesión ya cerrada, etc.
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+
+    /**
+     * Baja de este canasto por parte del broadcaster (cliente lento o envío fallido): solo se
+     * cae el canasto, la sesión y los demás siguen. Si la sesión ya no sirve, terminate()
+     * ya dio de baja todo.
+     */
+    @Override
+    public void close() {
+      // el id pudo haberse reusado para otro canasto mientras tanto
+      conn.baskets.computeIfPresent(basketId, (k, sub) -> sub.sink == this ? null : sub);
+      if (!conns.containsKey(conn.raw.getId())) return;
+      try {
+        sendError(conn, basketId, "Subscription dropped: client too slow. Subscribe again to resync");
+      } catch (IOException | RuntimeException ignored) {
+        // la sesión ya no acepta nada; sendText() o afterConnectionClosed limpian el resto
+      }
+    }
+  }
+}
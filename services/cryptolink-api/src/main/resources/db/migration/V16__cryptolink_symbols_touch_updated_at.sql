@@ -0,0 +1,20 @@
+-- updated_at confiable para el refresh incremental del SymbolRegistry
+-- (los "on conflict do update" de migraciones anteriores no lo tocaban)
+
+create or replace function cryptolink_symbols_touch_updated_at()
+returns trigger as $$
+begin
+  new.updated_at := now();
+  return new;
+end;
+$$ language plpgsql;
+
+drop trigger if exists trg_cryptolink_symbols_touch_updated_at on cryptolink_symbols;
+
+create trigger trg_cryptolink_symbols_touch_updated_at
+  before update on cryptolink_symbols
+  for each row
+  execute function cryptolink_symbols_touch_updated_at();
+
+create index if not exists idx_cryptolink_symbols_updated_at
+  on cryptolink_symbols(updated_at);
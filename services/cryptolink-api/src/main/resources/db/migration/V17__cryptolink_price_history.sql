@@ -0,0 +1,58 @@
+-- Historial de precios persistido (warm start de PriceHistoryCache).
+-- Particionado por día sobre observed_at: borrar lo viejo es un DROP de partición.
+
+create table if not exists cryptolink_price_history (
+  fiat        text             not null,
+  symbol      text             not null,
+  observed_at timestamptz      not null,
+  price       double precision not null,
+  primary key (fiat, symbol, observed_at)
+) partition by range (observed_at);
+
+-- red de seguridad si el job no creó a tiempo la partición del día
+create table if not exists cryptolink_price_history_default
+  partition of cryptolink_price_history default;
+
+-- Crea las particiones diarias [hoy, hoy + days_ahead] que falten
+create or replace function cryptolink_price_history_ensure_partitions(days_ahead int)
+returns void as $$
+declare
+  d date;
+  part text;
+begin
+  for i in 0..days_ahead loop
+    d := (now() at time zone 'UTC')::date + i;
+    part := 'cryptolink_price_history_p' || to_char(d, 'YYYYMMDD');
+    if to_regclass(part) is null then
+      execute format(
+        'create table %I partition of cryptolink_price_history for values from (%L) to (%L)',
+        part, d::timestamp at time zone 'UTC', (d + 1)::timestamp at time zone 'UTC');
+    end if;
+  end loop;
+end;
+$$ language plpgsql;
+
+-- Borra las particiones diarias anteriores a keep_from; devuelve cuántas
+create or replace function cryptolink_price_history_drop_before(keep_from date)
+returns int as $$
+declare
+  r record;
+  dropped int := 0;
+begin
+  for r in
+    select c.relname
+    from pg_inherits i
+    join pg_class c on c.oid = i.inhrelid
+    where i.inhparent = 'cryptolink_price_history'::regclass
+      and c.relname ~ '^cryptolink_price_history_p[0-9]{8}$'
+  loop
+    if to_date(right(r.relname, 8), 'YYYYMMDD') < keep_from then
+      execute format('drop table %I', r.relname);
+      dropped := dropped + 1;
+    end if;
+  end loop;
+  return dropped;
+end;
+$$ language plpgsql;
+
+select cryptolink_price_history_ensure_partitions(3);
@@ -0,0 +1,70 @@
+-- Particiones de cryptolink_price_history a prueba de huecos del job de mantenimiento.
+--
+-- Si el job no corre por más días que el look-ahead (líder caído, mantenimiento atrasado),
+-- los puntos de esos días caen en DEFAULT y el "create table ... partition of" de V17 truena
+-- para ese día, abortando también los días siguientes. Ahora cada día va en su propio bloque:
+-- se crea la tabla suelta, se le pasan las filas del día que estén en DEFAULT y se adjunta.
+
+create or replace function cryptolink_price_history_ensure_partitions(days_ahead int)
+returns void as $$
+declare
+  d date;
+  part text;
+  lo timestamptz;
+  hi timestamptz;
+begin
+  for i in 0..days_ahead loop
+    d := (now() at time zone 'UTC')::date + i;
+    part := 'cryptolink_price_history_p' || to_char(d, 'YYYYMMDD');
+    continue when to_regclass(part) is not null;
+
+    lo := d::timestamp at time zone 'UTC';
+    hi := (d + 1)::timestamp at time zone 'UTC';
+    begin
+      -- nada nuevo entra a DEFAULT mientras se vacía el día (se suelta al terminar el bloque)
+      lock table cryptolink_price_history_default in share row exclusive mode;
+      execute format('create table %I (like cryptolink_price_history including defaults including constraints)', part);
+      execute format(
+        'with moved as (delete from cryptolink_price_history_default where observed_at >= %L and observed_at < %L returning *) '
+        'insert into %I select * from moved', lo, hi, part);
+      execute format(
+        'alter table cryptolink_price_history attach partition %I for values from (%L) to (%L)', part, lo, hi);
+    exception when others then
+      -- solo se pierde este día (se reintenta en el siguiente mantenimiento), no los demás
+      raise warning 'cryptolink_price_history partition % failed: %', part, sqlerrm;
+    end;
+  end loop;
+end;
+$$ language plpgsql;
+
+-- Borra las particiones diarias anteriores a keep_from (y lo viejo que haya quedado en DEFAULT);
+-- devuelve cuántas particiones borró
+create or replace function cryptolink_price_history_drop_before(keep_from date)
+returns int as $$
+declare
+  r record;
+  dropped int := 0;
+begin
+  for r in
+    select c.relname
+    from pg_inherits i
+    join pg_class c on c.oid = i.inhrelid
+    where i.inhparent = 'cryptolink_price_history'::regclass
+      and c.relname ~ '^cryptolink_price_history_p[0-9]{8}$'
+  loop
+    if to_date(right(r.relname, 8), 'YYYYMMDD') < keep_from then
+      execute format('drop table %I', r.relname);
+      dropped := dropped + 1;
+    end if;
+  end loop;
+
+  -- DEFAULT no tiene DROP por día: la retención ahí es un delete
+  delete from cryptolink_price_history_default
+  where observed_at < keep_from::timestamp at time zone 'UTC';
+
+  return dropped;
+end;
+$$ language plpgsql;
+
+-- repara de una vez lo que ya esté en DEFAULT para hoy y los próximos días
+select cryptolink_price_history_ensure_partitions(3);
@@ -0,0 +1,89 @@
+package com.evilink.crypto_link.bus;
+
+import com.evilink.crypto_link.service.PriceTable;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostgresPriceEventBusTest {
+
+  /** Sin base: el hilo de LISTEN solo reintenta hasta shutdown() */
+  private static PostgresPriceEventBus bus() {
+    DataSource ds = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+      new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+        throw new SQLException("no database in tests");
+      });
+    return new PostgresPriceEventBus(ds, new JdbcTemplate(ds), "cryptolink_prices", 1L);
+  }
+
+  private static PriceTick tick(int symbolsPerFiat) {
+    String[] symbols = new String[symbolsPerFiat + 1];
+    for (int i = 0; i < symbolsPerFiat; i++) symbols[i] = "SYM" + i;
+    symbols[symbolsPerFiat] = "NOPRICE";   // NaN: no viaja
+
+    PriceTable prices = new PriceTable(List.of("USD", "MXN", "EUR"), symbols);
+    for (int f = 0; f < prices.fiatCount(); f++) {
+      for (int i = 0; i < symbolsPerFiat; i++) prices.set(f, i, 12345.678901 + i);
+    }
+    return new PriceTick("replica-a", "coingecko", 1_700_000_000_000L, 3_000, prices);
+  }
+
+  @Test
+  void smallTickIsOnePayload() {
+    PostgresPriceEventBus bus = bus();
+    try {
+      PriceTick tick = tick(3);
+      List<String> parts = bus.encode(tick);
+
+      assertEquals(1, parts.size());
+      PriceTick decoded = PostgresPriceEventBus.decode(parts.get(0));
+      assertEquals(tick.origin(), decoded.origin());
+      assertEquals(tick.source(), decoded.source());
+      assertEquals(tick.observedAtEpochMs(), decoded.observedAtEpochMs());
+      assertEquals(tick.ttlMs(), decoded.ttlMs());
+      assertEquals(tick.prices().toNestedMap(), decoded.prices().toNestedMap());
+    } finally {
+      bus.shutdown();
+    }
+  }
+
+  @Test
+  void largeTickIsSplitIntoValidPartsCoveringAllPrices() {
+    PostgresPriceEventBus bus = bus();
+    try {
+      PriceTick tick = tick(400);
+      List<String> parts = bus.encode(tick);
+      assertTrue(parts.size() > 1);
+
+      Map<String, Map<String, BigDecimal>> union = new HashMap<>();
+      for (String payload : parts) {
+        assertTrue(payload.getBytes(StandardCharsets.UTF_8).length < 8000, "NOTIFY payload too big");
+
+        PriceTick part = PostgresPriceEventBus.decode(payload);
+        assertEquals(tick.origin(), part.origin());
+        assertEquals(tick.source(), part.source());
+        assertEquals(tick.observedAtEpochMs(), part.observedAtEpochMs());
+        assertEquals(tick.ttlMs(), part.ttlMs());
+        part.prices().toNestedMap().forEach((fiat, byFiat) -> byFiat.forEach((sym, price) -> {
+          BigDecimal prev = union.computeIfAbsent(fiat, k -> new HashMap<>()).put(sym, price);
+          assertNull(prev, "duplicated " + fiat + "/" + sym);
+        }));
+      }
+      assertEquals(tick.prices().toNestedMap(), union);
+    } finally {
+      bus.shutdown();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.evilink.crypto_link.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistoryJournalTest {
+
+  @TempDir
+  Path dir;
+
+  private HistoryJournal journal(PriceHistoryCache cache, int segmentBytes, int maxSegments) throws Exception {
+    HistoryJournal j = new HistoryJournal(cache, dir.toString(), segmentBytes, maxSegments, 1000, 60_000);
+    j.start();
+    return j;
+  }
+
+  private static PriceHistoryCache cache() {
+    return new PriceHistoryCache(24, 120, 168);
+  }
+
+  @Test
+  void pointsWrittenByWriterThreadAreReplayedOnRestart() throws Exception {
+    PriceHistoryCache first = cache();
+    HistoryJournal j = journal(first, 1 << 16, 8);
+    long t0 = System.currentTimeMillis() - 10_000;
+    first.add("usd", "btc", t0, 100.0);
+    first.add("USD", "ETH", t0 + 1, 10.0);
+    first.add("MXN", "BTC", t0 + 2, 1_800.0);
+    first.add("USD", "BTC", t0 + 3, 101.5);
+    j.shutdown();   // vacía la cola y hace force
+
+    PriceHistoryCache second = cache();
+    HistoryJournal again = journal(second, 1 << 16, 8);
+    try {
+      List<PriceHistoryCache.Point> btc = second.get("USD", "BTC");
+      assertEquals(2, btc.size());
+      assertEquals(0, btc.get(1).v.compareTo(BigDecimal.valueOf(101.5)));
+      assertEquals(1, second.get("USD", "ETH").size());
+      assertEquals(1, second.get("MXN", "BTC").size());
+    } finally {
+      again.shutdown();
+    }
+  }
+
+  @Test
+  void rollKeepsOnlyMaxSegments() throws Exception {
+    PriceHistoryCache first = cache();
+    // dos registros por segmento
+    HistoryJournal j = journal(first, 2 * HistoryJournal.RECORD_BYTES, 2);
+    long t0 = System.currentTimeMillis() - 10_000;
+    for (int i = 0; i < 7; i++) first.add("USD", "BTC", t0 + i, 100.0 + i);
+    j.shutdown();
+
+    try (Stream<Path> s = Files.list(dir)) {
+      assertEquals(2, s.filter(p -> p.getFileName().toString().endsWith(".jnl")).count());
+    }
+
+    PriceHistoryCache second = cache();
+    HistoryJournal again = journal(second, 2 * HistoryJournal.RECORD_BYTES, 2);
+    try {
+      List<PriceHistoryCache.Point> btc = second.get("USD", "BTC");
+      // segmentos 3 (puntos 4,5) y 4 (punto 6)
+      assertEquals(3, btc.size());
+      assertEquals(0, btc.get(2).v.compareTo(BigDecimal.valueOf(106.0)));
+    } finally {
+      again.shutdown();
+    }
+  }
+}
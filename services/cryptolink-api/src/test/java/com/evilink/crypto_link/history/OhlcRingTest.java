@@ -0,0 +1,76 @@
+package com.evilink.crypto_link.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OhlcRingTest {
+
+  @Test
+  void aggregatesPointsOfTheSameBucket() {
+    OhlcRing ring = new OhlcRing(60_000, 4);
+    ring.update(60_500, 10);
+    ring.update(61_000, 14);
+    ring.update(62_000, 8);
+    ring.update(119_999, 11);
+
+    OhlcRing.Candles c = ring.since(0);
+    assertEquals(1, c.size());
+    assertArrayEquals(new long[] { 60_000 }, c.start());
+    assertArrayEquals(new double[] { 10 }, c.open());
+    assertArrayEquals(new double[] { 14 }, c.high());
+    assertArrayEquals(new double[] { 8 }, c.low());
+    assertArrayEquals(new double[] { 11 }, c.close());
+  }
+
+  @Test
+  void ignoresPointsOfClosedBuckets() {
+    OhlcRing ring = new OhlcRing(1000, 4);
+    ring.update(1500, 1);
+    ring.update(2500, 2);
+    ring.update(1700, 99);   // bucket 1000 ya no es el último
+
+    OhlcRing.Candles c = ring.since(0);
+    assertArrayEquals(new long[] { 1000, 2000 }, c.start());
+    assertArrayEquals(new double[] { 1, 2 }, c.high());
+  }
+
+  @Test
+  void wrapsAroundAndFiltersBySince() {
+    OhlcRing ring = new OhlcRing(1000, 3);
+    for (int i = 0; i < 5; i++) ring.update(i * 1000L, i);
+
+    assertArrayEquals(new long[] { 2000, 3000, 4000 }, ring.since(0).start());
+    assertArrayEquals(new long[] { 3000, 4000 }, ring.since(2500).start());
+    assertEquals(0, ring.since(5000).size());
+  }
+
+  @Test
+  void readersNeverSeeTornCandles() throws InterruptedException {
+    OhlcRing ring = new OhlcRing(4, 8);
+    AtomicReference<String> torn = new AtomicReference<>();
+
+    // valor == ms y creciente: en cada vela open == low == inicio y high == close
+    Thread writer = new Thread(() -> {
+      for (long ms = 0; ms < 400_000; ms++) ring.update(ms, ms);
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      OhlcRing.Candles c = ring.since(0);
+      for (int k = 0; k < c.size(); k++) {
+        long start = c.start()[k];
+        if (c.open()[k] != start || c.low()[k] != start || c.high()[k] != c.close()[k]
+            || c.close()[k] < start || c.close()[k] > start + 3) {
+          torn.compareAndSet(null, "bucket " + start);
+        }
+      }
+    }
+    writer.join();
+
+    assertNull(torn.get());
+  }
+}
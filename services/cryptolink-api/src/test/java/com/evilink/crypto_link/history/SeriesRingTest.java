@@ -0,0 +1,62 @@
+package com.evilink.crypto_link.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesRingTest {
+
+  @Test
+  void emptyRingHasEmptySnapshot() {
+    assertEquals(0, new SeriesRing(4).snapshot().size());
+  }
+
+  @Test
+  void wrapsAroundKeepingNewestOldestFirst() {
+    SeriesRing ring = new SeriesRing(3);
+    for (int i = 1; i <= 5; i++) assertTrue(ring.append(i * 1000L, i));
+
+    SeriesRing.Snapshot s = ring.snapshot();
+    assertArrayEquals(new long[] { 3000, 4000, 5000 }, s.ts());
+    assertArrayEquals(new double[] { 3, 4, 5 }, s.values());
+  }
+
+  @Test
+  void rejectsConsecutiveDuplicatesAndOlderPoints() {
+    SeriesRing ring = new SeriesRing(4);
+    assertTrue(ring.append(1000, 10));
+    assertFalse(ring.append(2000, 10));   // mismo valor
+    assertFalse(ring.append(500, 11));    // más viejo
+    assertTrue(ring.append(1000, 11));    // mismo ms, otro valor
+
+    assertArrayEquals(new long[] { 1000, 1000 }, ring.snapshot().ts());
+  }
+
+  @Test
+  void readersNeverSeeTornPoints() throws InterruptedException {
+    SeriesRing ring = new SeriesRing(8);
+    AtomicReference<String> torn = new AtomicReference<>();
+
+    // writer: value == ts, así un punto mezclado se nota
+    Thread writer = new Thread(() -> {
+      for (long i = 1; i <= 200_000; i++) ring.append(i, i);
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      SeriesRing.Snapshot s = ring.snapshot();
+      for (int k = 0; k < s.size(); k++) {
+        if (s.values()[k] != s.ts()[k]) torn.compareAndSet(null, s.ts()[k] + " != " + s.values()[k]);
+        if (k > 0 && s.ts()[k] != s.ts()[k - 1] + 1) torn.compareAndSet(null, "gap at " + s.ts()[k]);
+      }
+    }
+    writer.join();
+
+    assertNull(torn.get());
+  }
+}
@@ -0,0 +1,95 @@
+package com.evilink.crypto_link.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+  private static final RuntimeException BOOM = new IllegalStateException("boom");
+
+  @Test
+  void opensAfterThresholdAndRejectsUntilOpenUntil() {
+    CircuitBreaker b = new CircuitBreaker(3, 1_000, 10_000);
+
+    b.onFailure(0, BOOM);
+    b.onFailure(0, BOOM);
+    assertEquals(CircuitBreaker.State.CLOSED, b.state(0));
+
+    b.onFailure(0, BOOM);
+    assertEquals(CircuitBreaker.State.OPEN, b.state(0));
+    assertFalse(b.tryAcquire(999));
+    assertEquals(1_000, b.openUntilEpochMs());
+  }
+
+  @Test
+  void halfOpenLetsOneProbeThroughAndClosesOnSuccess() {
+    CircuitBreaker b = new CircuitBreaker(1, 1_000, 10_000);
+    b.onFailure(0, BOOM);
+
+    assertTrue(b.tryAcquire(1_000));     // la sonda
+    assertFalse(b.tryAcquire(1_001));    // nadie más mientras tanto
+    b.onSuccess();
+
+    assertEquals(CircuitBreaker.State.CLOSED, b.state(1_002));
+    assertTrue(b.tryAcquire(1_002));
+  }
+
+  @Test
+  void failedProbeReopensWithExponentialBackoff() {
+    CircuitBreaker b = new CircuitBreaker(1, 1_000, 10_000);
+    b.onFailure(0, BOOM);                // abre 1s
+
+    assertTrue(b.tryAcquire(1_000));
+    b.onFailure(1_000, BOOM);            // abre 2s
+
+    assertEquals(3_000, b.openUntilEpochMs());
+    assertFalse(b.tryAcquire(2_999));
+  }
+
+  @Test
+  void releaseFreesProbeWithoutClosing() {
+    CircuitBreaker b = new CircuitBreaker(1, 1_000, 10_000);
+    b.onFailure(0, BOOM);
+
+    assertTrue(b.tryAcquire(1_000));
+    b.release();
+
+    // sigue medio abierto: la siguiente llamada es la sonda real
+    assertEquals(CircuitBreaker.State.HALF_OPEN, b.state(1_001));
+    assertTrue(b.tryAcquire(1_001));
+    assertFalse(b.tryAcquire(1_002));
+  }
+
+  @Test
+  void releaseDoesNotResetFailureStreak() {
+    CircuitBreaker b = new CircuitBreaker(2, 1_000, 10_000);
+
+    b.onFailure(0, BOOM);
+    b.release();
+    b.onFailure(0, BOOM);
+
+    assertEquals(CircuitBreaker.State.OPEN, b.state(0));
+  }
+
+  @Test
+  void throttleHonorsRetryAfter() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, "30");
+    var tooMany = HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+      headers, new byte[0], StandardCharsets.UTF_8);
+
+    CircuitBreaker b = new CircuitBreaker(5, 1_000, 60_000);
+    b.onFailure(0, tooMany);
+
+    assertEquals(CircuitBreaker.State.OPEN, b.state(0));
+    assertEquals(30_000, b.openUntilEpochMs());
+  }
+}
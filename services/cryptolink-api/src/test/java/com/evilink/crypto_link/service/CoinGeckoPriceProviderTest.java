@@ -0,0 +1,70 @@
+package com.evilink.crypto_link.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoinGeckoPriceProviderTest {
+
+  private static final String[] SYMBOLS = { "BTC", "ETH", "WETH" };
+  // ethereum mapea a dos símbolos
+  private static final Map<String, int[]> ORDS = Map.of(
+    "bitcoin", new int[] { 0 },
+    "ethereum", new int[] { 1, 2 }
+  );
+
+  private static PriceTable parse(String json, List<String> fiats) throws IOException {
+    PriceTable t = new PriceTable(fiats, SYMBOLS);
+    CoinGeckoPriceProvider.readInto(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), t, ORDS);
+    return t;
+  }
+
+  @Test
+  void readsIdsAndFiatsIntoTable() throws IOException {
+    PriceTable t = parse("{\"bitcoin\":{\"usd\":65000.5,\"mxn\":1100000},\"ethereum\":{\"usd\":3200.25}}",
+      List.of("usd", "mxn"));
+
+    int usd = t.fiatIndex("USD");
+    int mxn = t.fiatIndex("mxn");
+    assertEquals(65000.5, t.get(usd, 0));
+    assertEquals(1100000.0, t.get(mxn, 0));
+    assertEquals(3200.25, t.get(usd, 1));
+    assertEquals(3200.25, t.get(usd, 2));
+    assertTrue(Double.isNaN(t.get(mxn, 1)));
+  }
+
+  @Test
+  void skipsUnknownIdsFiatsAndNonNumbers() throws IOException {
+    PriceTable t = parse("{\"dogecoin\":{\"usd\":0.1},"
+        + "\"bitcoin\":{\"eur\":60000,\"usd\":null,\"usd_24h_change\":{\"x\":1}},"
+        + "\"ethereum\":[1,2]}",
+      List.of("usd"));
+
+    assertTrue(t.isEmpty());
+  }
+
+  @Test
+  void nonObjectBodyLeavesTableEmpty() throws IOException {
+    assertTrue(parse("[]", List.of("usd")).isEmpty());
+  }
+
+  @Test
+  void toMapAndNestedMapSkipMissingPrices() throws IOException {
+    PriceTable t = parse("{\"bitcoin\":{\"usd\":2.5}}", List.of("usd", "mxn"));
+
+    assertFalse(t.isEmpty());
+    assertEquals(Map.of("BTC", BigDecimal.valueOf(2.5)), t.toMap("usd"));
+    assertEquals(Map.of(), t.toMap("mxn"));
+    assertEquals(Map.of(), t.toMap("EUR"));
+    assertEquals(Map.of("USD", Map.of("BTC", BigDecimal.valueOf(2.5))), t.toNestedMap());
+  }
+}
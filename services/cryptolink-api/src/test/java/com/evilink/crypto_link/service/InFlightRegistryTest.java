@@ -0,0 +1,75 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightRegistryTest {
+
+  private final InFlightRegistry registry = new InFlightRegistry(new ApiMetrics(new SimpleMeterRegistry()));
+
+  /** Arranca el líder colgado en release y un segundo caller con la misma key */
+  private CompletableFuture<Object> coalesced(CountDownLatch started, CountDownLatch release, Throwable error,
+                                              AtomicInteger calls) throws InterruptedException {
+    CompletableFuture.runAsync(() -> {
+      try {
+        registry.run("stub", "k", () -> {
+          calls.incrementAndGet();
+          started.countDown();
+          await(release);
+          if (error instanceof Error e) throw e;
+          if (error instanceof RuntimeException e) throw e;
+          return "leader";
+        });
+      } catch (Throwable ignored) {
+        // el líder también truena; aquí interesa el que espera
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> registry.run("stub", "k", () -> {
+      calls.incrementAndGet();
+      return "waiter";
+    }));
+    Thread.sleep(50);   // que alcance a colgarse del future del líder
+    release.countDown();
+    return waiter;
+  }
+
+  private static void await(CountDownLatch l) {
+    try {
+      l.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void waiterGetsLeaderResult() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    var waiter = coalesced(new CountDownLatch(1), new CountDownLatch(1), null, calls);
+
+    assertEquals("leader", waiter.get(5, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void errorInLeaderReleasesWaiters() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    var waiter = coalesced(new CountDownLatch(1), new CountDownLatch(1), new NoClassDefFoundError("boom"), calls);
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof NoClassDefFoundError, "cause " + e.getCause());
+    assertEquals(1, calls.get());
+  }
+}
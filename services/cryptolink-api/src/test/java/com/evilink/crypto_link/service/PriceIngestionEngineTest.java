@@ -0,0 +1,96 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceIngestionEngineTest {
+
+  private final CountDownLatch upstream = new CountDownLatch(1);
+  private final AtomicInteger refreshes = new AtomicInteger();
+
+  /** refresh() se queda colgado hasta que el test suelta upstream */
+  private PriceService hangingPriceService() {
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    InProcessPriceEventBus bus = new InProcessPriceEventBus();
+    return new PriceService(new PriceProviderRegistry(List.of(), metrics, "", 0.95, 50, 5, 60_000, 60_000),
+        new PriceCache(), new InFlightRegistry(metrics), bus, 3_000, 30_000, false) {
+      @Override
+      public PriceTable refresh(List<String> symbols, Collection<String> fiats, long publishTtlMs) {
+        refreshes.incrementAndGet();
+        try {
+          upstream.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new PriceTable(List.copyOf(fiats), symbols.toArray(String[]::new));
+      }
+    };
+  }
+
+  private static SymbolRegistry registry(int symbols) {
+    SymbolRegistry r = new SymbolRegistry(new SymbolService(null) {
+      @Override
+      public List<SymbolRow> listAll() {
+        return IntStream.range(0, symbols)
+          .mapToObj(i -> new SymbolRow("S" + i, "id-" + i, true, Instant.EPOCH))
+          .toList();
+      }
+    }, 600_000);
+    r.refresh();
+    return r;
+  }
+
+  private static FiatService fiats() {
+    return new FiatService(null) {
+      @Override
+      public Set<String> listActiveSet() {
+        return Set.of("USD");
+      }
+    };
+  }
+
+  @Test
+  void slowUpstreamDoesNotHoldSchedulerPastCycleDeadline() {
+    // 60 símbolos = 3 batches, 2 hilos
+    PriceIngestionEngine engine = new PriceIngestionEngine(hangingPriceService(), registry(60), fiats(),
+      new InProcessPriceEventBus(), true, 15_000, 2, 200);
+    try {
+      long t0 = System.currentTimeMillis();
+      engine.ingest();
+      long tookMs = System.currentTimeMillis() - t0;
+
+      assertTrue(tookMs < 2_000, "ingest blocked for " + tookMs + "ms");
+      assertEquals(2, refreshes.get());
+    } finally {
+      upstream.countDown();
+    }
+  }
+
+  @Test
+  void nextCycleIsSkippedWhileLateBatchesAreInFlight() throws InterruptedException {
+    PriceIngestionEngine engine = new PriceIngestionEngine(hangingPriceService(), registry(10), fiats(),
+      new InProcessPriceEventBus(), true, 15_000, 2, 100);
+    engine.ingest();
+    engine.ingest();
+    assertEquals(1, refreshes.get());
+
+    upstream.countDown();
+    Thread.sleep(200);
+    engine.ingest();
+    assertEquals(2, refreshes.get());
+  }
+}
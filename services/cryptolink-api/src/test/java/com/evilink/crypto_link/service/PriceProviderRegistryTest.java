@@ -0,0 +1,211 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.exception.CircuitOpenException;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceProviderRegistryTest {
+
+  /** Proveedor local: responde (o truena) después de delayMs */
+  static final class StubProvider implements PriceProvider {
+    final String name;
+    final long delayMs;
+    final RuntimeException error;
+    final double price;
+    final AtomicInteger calls = new AtomicInteger();
+
+    StubProvider(String name, long delayMs, double price) {
+      this(name, delayMs, price, null);
+    }
+
+    StubProvider(String name, long delayMs, double price, RuntimeException error) {
+      this.name = name;
+      this.delayMs = delayMs;
+      this.price = price;
+      this.error = error;
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public void validate(List<String> symbols) {
+      if (symbols.contains("NOPE")) throw new IllegalArgumentException("Missing mapping for: [NOPE]");
+    }
+
+    @Override
+    public PriceTable getPriceTable(List<String> symbols, Collection<String> fiats) {
+      calls.incrementAndGet();
+      if (delayMs > 0) {
+        try {
+          Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (error != null) throw error;
+      PriceTable t = new PriceTable(List.copyOf(fiats), new String[] { "BTC" });
+      t.set(0, 0, price);
+      return t;
+    }
+  }
+
+  private static PriceProviderRegistry registry(int failureThreshold, PriceProvider... providers) {
+    return new PriceProviderRegistry(List.of(providers), new ApiMetrics(new SimpleMeterRegistry()),
+      "a,b", 0.95, 50, failureThreshold, 60_000, 60_000);
+  }
+
+  @Test
+  void primarySuccessDoesNotLaunchSecondary() {
+    StubProvider a = new StubProvider("a", 0, 100);
+    StubProvider b = new StubProvider("b", 0, 200);
+
+    var fetched = registry(5, b, a).fetch(List.of("BTC"), List.of("USD"));
+
+    assertEquals("a", fetched.provider());
+    assertEquals(100.0, fetched.prices().get(0, 0));
+    assertEquals(0, b.calls.get());
+  }
+
+  @Test
+  void slowPrimaryIsHedgedAndFirstSuccessWins() {
+    StubProvider a = new StubProvider("a", 1_000, 100);
+    StubProvider b = new StubProvider("b", 0, 200);
+
+    long t0 = System.currentTimeMillis();
+    var fetched = registry(5, a, b).fetch(List.of("BTC"), List.of("USD"));
+    long took = System.currentTimeMillis() - t0;
+
+    assertEquals("b", fetched.provider());
+    assertEquals(200.0, fetched.prices().get(0, 0));
+    assertEquals(1, a.calls.get());
+    assertTrue(took < 1_000, "no esperó al primario, took=" + took);
+  }
+
+  @Test
+  void allProvidersFailingAggregatesErrors() {
+    StubProvider a = new StubProvider("a", 0, 0, new IllegalStateException("a down"));
+    StubProvider b = new StubProvider("b", 0, 0, new IllegalStateException("b down"));
+
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+      () -> registry(5, a, b).fetch(List.of("BTC"), List.of("USD")));
+
+    assertEquals("a down", e.getMessage());
+    assertEquals(1, e.getSuppressed().length);
+    assertEquals("b down", e.getSuppressed()[0].getMessage());
+  }
+
+  @Test
+  void openBreakerSkipsProviderWithoutCallingIt() {
+    StubProvider a = new StubProvider("a", 0, 0, new IllegalStateException("a down"));
+    StubProvider b = new StubProvider("b", 0, 200);
+    PriceProviderRegistry registry = registry(1, a, b);
+
+    // primera: a falla (abre su circuito) y b contesta
+    assertEquals("b", registry.fetch(List.of("BTC"), List.of("USD")).provider());
+    assertEquals(1, a.calls.get());
+
+    // segunda: a está abierto, ni se llama
+    long t0 = System.currentTimeMillis();
+    assertEquals("b", registry.fetch(List.of("BTC"), List.of("USD")).provider());
+    assertEquals(1, a.calls.get());
+    assertTrue(System.currentTimeMillis() - t0 < 1_000);
+  }
+
+  @Test
+  void unmappedSymbolFailsBeforeTouchingBreaker() {
+    StubProvider a = new StubProvider("a", 0, 0, new IllegalStateException("a down"));
+    PriceProviderRegistry registry = registry(2, a);
+
+    // una falla real deja la racha en 1
+    assertThrows(IllegalStateException.class, () -> registry.fetch(List.of("BTC"), List.of("USD")));
+
+    // el símbolo inválido no llega al proveedor ni resetea la racha
+    assertThrows(IllegalArgumentException.class, () -> registry.fetch(List.of("NOPE"), List.of("USD")));
+    assertEquals(1, a.calls.get());
+
+    // la segunda falla real abre el circuito
+    assertThrows(IllegalStateException.class, () -> registry.fetch(List.of("BTC"), List.of("USD")));
+    assertThrows(CircuitOpenException.class,
+      () -> registry.fetch(List.of("BTC"), List.of("USD")));
+    assertEquals(2, a.calls.get());
+  }
+
+  @Test
+  void errorDuringHalfOpenProbeReleasesTheProbe() throws InterruptedException {
+    AtomicReference<Throwable> next = new AtomicReference<>(new IllegalStateException("down"));
+    AtomicInteger calls = new AtomicInteger();
+    PriceProvider a = new PriceProvider() {
+      @Override
+      public String name() {
+        return "a";
+      }
+
+      @Override
+      public PriceTable getPriceTable(List<String> symbols, Collection<String> fiats) {
+        calls.incrementAndGet();
+        Throwable t = next.getAndSet(null);
+        if (t instanceof RuntimeException re) throw re;
+        if (t instanceof Error err) throw err;
+        PriceTable table = new PriceTable(List.copyOf(fiats), new String[] { "BTC" });
+        table.set(0, 0, 100);
+        return table;
+      }
+    };
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    PriceProviderRegistry registry = new PriceProviderRegistry(List.of(a), new ApiMetrics(meters), "a", 0.95, 50, 1, 20, 20);
+
+    // abre el circuito
+    assertThrows(IllegalStateException.class, () -> registry.fetch(List.of("BTC"), List.of("USD")));
+    Thread.sleep(40);
+
+    // la sonda half-open muere con un Error
+    next.set(new StackOverflowError("boom"));
+    assertThrows(StackOverflowError.class, () -> registry.fetch(List.of("BTC"), List.of("USD")));
+
+    // el permiso se soltó: la siguiente sale y cierra el circuito
+    assertEquals("a", registry.fetch(List.of("BTC"), List.of("USD")).provider());
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  void illegalArgumentFromProviderIsNotAnUpstreamError() {
+    AtomicInteger calls = new AtomicInteger();
+    PriceProvider a = new PriceProvider() {
+      @Override
+      public String name() {
+        return "a";
+      }
+
+      @Override
+      public PriceTable getPriceTable(List<String> symbols, Collection<String> fiats) {
+        if (calls.incrementAndGet() <= 3) throw new IllegalArgumentException("Missing mapping for: [BTC]");
+        PriceTable table = new PriceTable(List.copyOf(fiats), new String[] { "BTC" });
+        table.set(0, 0, 100);
+        return table;
+      }
+    };
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    PriceProviderRegistry registry = new PriceProviderRegistry(List.of(a), new ApiMetrics(meters), "a", 0.95, 50, 1, 60_000, 60_000);
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(IllegalArgumentException.class, () -> registry.fetch(List.of("BTC"), List.of("USD")));
+    }
+    // con threshold 1 una sola falla contada lo habría abierto
+    assertEquals("a", registry.fetch(List.of("BTC"), List.of("USD")).provider());
+    assertNull(meters.find("cryptolink_upstream_errors_total").counter());
+  }
+}
@@ -0,0 +1,116 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.history.PriceHistoryCache;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes asignados por fetch: la tabla primitiva pasa tal cual por cache, bus e historial,
+ * contra materializar BigDecimal para el cache y un Map anidado para el bus (ruta anterior).
+ */
+class PricePublishAllocationTest {
+
+  private static final List<String> FIATS = List.of("USD", "MXN", "EUR", "BRL");
+  private static final int SYMBOLS = 2_000;
+
+  /** Siempre la misma tabla ya llena: el parseo no entra en la medición */
+  static final class FixedProvider implements PriceProvider {
+    final PriceTable table;
+
+    FixedProvider(PriceTable table) {
+      this.table = table;
+    }
+
+    @Override
+    public String name() {
+      return "fixed";
+    }
+
+    @Override
+    public PriceTable getPriceTable(List<String> symbols, Collection<String> fiats) {
+      return table;
+    }
+  }
+
+  private static PriceTable table() {
+    String[] symbols = new String[SYMBOLS];
+    for (int i = 0; i < SYMBOLS; i++) symbols[i] = "SYM" + i;
+    PriceTable t = new PriceTable(FIATS, symbols);
+    for (int f = 0; f < FIATS.size(); f++) {
+      for (int i = 0; i < SYMBOLS; i++) t.set(f, i, 1234.5678 * (f + 1) + i / 7.0);
+    }
+    return t;
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+  }
+
+  @Test
+  void publishingTheTableAllocatesFarLessThanMaterializingBigDecimals() {
+    PriceTable table = table();
+    List<String> symbols = List.of(table.symbol(0));   // el proveedor fijo ignora la lista
+
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    InProcessPriceEventBus bus = new InProcessPriceEventBus();
+    PriceCache cache = new PriceCache();
+    PriceHistoryCache history = new PriceHistoryCache(24, 120, 168);
+    PriceProviderRegistry providers = new PriceProviderRegistry(List.of(new FixedProvider(table)), metrics, "fixed",
+      0.95, 50, 5, 60_000, 60_000);
+    PriceService svc = new PriceService(providers, cache, new InFlightRegistry(metrics), bus, 3_000, 30_000, false);
+    // lo mismo que hace PriceHistoryRecorder con cada tick
+    bus.subscribe(tick -> {
+      PriceTable t = tick.prices();
+      for (int f = 0; f < t.fiatCount(); f++) {
+        for (int ord = 0; ord < t.symbolCount(); ord++) {
+          double v = t.get(f, ord);
+          if (!Double.isNaN(v)) history.add(t.fiat(f), t.symbol(ord), tick.observedAtEpochMs(), v);
+        }
+      }
+    });
+
+    PriceCache legacyCache = new PriceCache();
+    PriceHistoryCache legacyHistory = new PriceHistoryCache(24, 120, 168);
+
+    int warmup = 20;
+    int rounds = 50;
+    long tableBytes = 0;
+    long legacyBytes = 0;
+    for (int r = 0; r < warmup + rounds; r++) {
+      long a0 = allocatedBytes();
+      svc.refresh(symbols, FIATS, 3_000);
+      long a1 = allocatedBytes();
+
+      // ruta anterior: BigDecimal por celda para el cache, Map anidado para el bus y vuelta a double
+      long now = System.currentTimeMillis();
+      for (String fiat : FIATS) legacyCache.put(fiat, table.toMap(fiat), 3_000);
+      Map<String, Map<String, BigDecimal>> nested = table.toNestedMap();
+      nested.forEach((fiat, prices) -> prices.forEach((sym, v) -> legacyHistory.add(fiat, sym, now, v.doubleValue())));
+      long a2 = allocatedBytes();
+
+      if (r >= warmup) {
+        tableBytes += a1 - a0;
+        legacyBytes += a2 - a1;
+      }
+    }
+
+    assertEquals(0, BigDecimal.valueOf(table.get(1, 42)).compareTo(cache.get("MXN", "SYM42").price()));
+
+    long cells = (long) FIATS.size() * SYMBOLS;
+    System.out.printf("publish %d cells: table=%d B/cell, BigDecimal maps=%d B/cell%n",
+      cells, tableBytes / rounds / cells, legacyBytes / rounds / cells);
+    assertTrue(tableBytes * 2 < legacyBytes,
+      "table " + tableBytes / rounds + "B/tick vs maps " + legacyBytes / rounds + "B/tick");
+  }
+}
@@ -0,0 +1,74 @@
+package com.evilink.crypto_link.service;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.bus.PriceTick;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceServiceBusTest {
+
+  private final InProcessPriceEventBus bus = new InProcessPriceEventBus();
+  private final PriceCache cache = new PriceCache();
+
+  private PriceService service(long ttlMs, long hardTtlMs) {
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    PriceProviderRegistry providers = new PriceProviderRegistry(List.of(), metrics, "", 0.95, 50, 5, 60_000, 60_000);
+    return new PriceService(providers, cache, new InFlightRegistry(metrics), bus, ttlMs, hardTtlMs, false);
+  }
+
+  private static PriceTick tick(String origin, String price) {
+    PriceTable prices = new PriceTable(List.of("USD"), new String[] { "BTC" });
+    prices.set(0, 0, Double.parseDouble(price));
+    return new PriceTick(origin, "stub", System.currentTimeMillis(), 60_000, prices);
+  }
+
+  @Test
+  void tickFromOtherReplicaFillsCache() {
+    service(3_000, 30_000);
+
+    bus.publish(tick("other-replica", "100.5"));
+
+    PriceCache.Entry entry = cache.get("USD", "BTC");
+    assertNotNull(entry);
+    assertEquals(0, new BigDecimal("100.5").compareTo(entry.price()));
+  }
+
+  @Test
+  void ownTickIsIgnored() {
+    service(3_000, 30_000);
+
+    bus.publish(tick(bus.instanceId(), "100.5"));
+
+    assertNull(cache.get("USD", "BTC"));
+  }
+
+  @Test
+  void orphanBatchesSkipStalePairsStillWithinHardTtl() {
+    PriceService svc = service(3_000, 60_000);
+    cache.put("USD", Map.of("BTC", BigDecimal.ONE), -1);  // ya caducó (soft) pero no pasa el hard TTL
+    Map<String, List<String>> requested = Map.of("USD", List.of("BTC"));
+
+    assertEquals(1, svc.prefetchBatches(requested, 25).size());
+    assertTrue(svc.prefetchOrphanBatches(requested, 25).isEmpty());
+  }
+
+  @Test
+  void orphanBatchesFetchMissingAndExpiredPairs() throws InterruptedException {
+    PriceService svc = service(1, 1);
+    cache.put("USD", Map.of("BTC", BigDecimal.ONE), 1);
+    Thread.sleep(5);
+
+    assertEquals(1, svc.prefetchOrphanBatches(Map.of("USD", List.of("BTC")), 25).size());
+    assertEquals(1, svc.prefetchOrphanBatches(Map.of("USD", List.of("ETH")), 25).size());
+  }
+}
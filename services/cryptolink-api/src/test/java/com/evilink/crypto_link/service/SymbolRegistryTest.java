@@ -0,0 +1,81 @@
+package com.evilink.crypto_link.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolRegistryTest {
+
+  /** DB colgada (como Hikari esperando connection-timeout) hasta que el test la suelta */
+  static final class HangingSymbolService extends SymbolService {
+    final CountDownLatch db = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+
+    HangingSymbolService() {
+      super(null);
+    }
+
+    @Override
+    public List<SymbolRow> listAll() {
+      calls.incrementAndGet();
+      try {
+        db.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return List.of(new SymbolRow("BTC", "bitcoin", true, Instant.EPOCH));
+    }
+  }
+
+  @Test
+  void snapshotDoesNotBlockWhileInitialLoadHangs() throws InterruptedException {
+    HangingSymbolService db = new HangingSymbolService();
+    SymbolRegistry registry = new SymbolRegistry(db, 600_000);
+
+    long t0 = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, registry.snapshot().version);
+      assertTrue(registry.activeSymbols().isEmpty());
+    }
+    assertTrue(System.currentTimeMillis() - t0 < 1_000);
+    // el hilo de carga puede no haber arrancado aún
+    long started = System.currentTimeMillis() + 2_000;
+    while (db.calls.get() == 0 && System.currentTimeMillis() < started) Thread.sleep(5);
+    registry.snapshot();
+    // un solo intento en segundo plano, no uno por llamada
+    assertEquals(1, db.calls.get());
+
+    db.db.countDown();
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (registry.snapshot().version == 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    assertEquals(List.of("BTC"), registry.activeSymbols());
+  }
+
+  @Test
+  void failedLoadBacksOffBeforeNextBackgroundAttempt() throws InterruptedException {
+    AtomicInteger calls = new AtomicInteger();
+    SymbolRegistry registry = new SymbolRegistry(new SymbolService(null) {
+      @Override
+      public List<SymbolRow> listAll() {
+        calls.incrementAndGet();
+        throw new IllegalStateException("db down");
+      }
+    }, 600_000);
+
+    registry.snapshot();
+    long deadline = System.currentTimeMillis() + 2_000;
+    while (calls.get() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    Thread.sleep(50);
+
+    for (int i = 0; i < 100; i++) registry.snapshot();
+    Thread.sleep(50);
+    assertEquals(1, calls.get());
+  }
+}
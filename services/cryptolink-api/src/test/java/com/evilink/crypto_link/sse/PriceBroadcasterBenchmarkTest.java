@@ -0,0 +1,246 @@
+package com.evilink.crypto_link.sse;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import com.evilink.crypto_link.security.ApiKeyStore;
+import com.evilink.crypto_link.service.InFlightRegistry;
+import com.evilink.crypto_link.service.PriceCache;
+import com.evilink.crypto_link.service.PriceProviderRegistry;
+import com.evilink.crypto_link.service.PriceService;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serialize-once medido: 10k suscriptores simulados repartidos en pocos grupos, contra
+ * serializar el frame una vez por suscriptor (lo que hacía SseEmitter.send por cliente).
+ * Cuenta bytes asignados en el hilo que hace el broadcast y el tiempo hasta que todos reciben.
+ * También los bytes por evento de format=json contra format=compact.
+ */
+class PriceBroadcasterBenchmarkTest {
+
+  private static final int SUBSCRIBERS = 10_000;
+  private static final int GROUPS = 50;
+  private static final String[] UNIVERSE = {"BTC", "ETH", "SOL", "XRP", "ADA", "DOGE", "DOT", "LTC", "AVAX", "LINK"};
+
+  /** Sink que no hace I/O: solo cuenta frames de precio y junta las instancias de bytes vistas */
+  static final class CountingSink implements FrameSink {
+    final AtomicInteger received;
+    final Set<byte[]> distinct;
+
+    CountingSink(AtomicInteger received, Set<byte[]> distinct) {
+      this.received = received;
+      this.distinct = distinct;
+    }
+
+    @Override
+    public void send(String event, String id, byte[] data) {
+      if (!"price".equals(event)) return;
+      distinct.add(data);
+      received.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static PriceBroadcaster broadcaster() {
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    PriceService prices = new PriceService(new PriceProviderRegistry(List.of(), metrics, "", 0.95, 50, 5, 60_000, 60_000),
+      new PriceCache(), new InFlightRegistry(metrics), new InProcessPriceEventBus(), 3_000, 30_000, false);
+    ApiKeyStore store = new ApiKeyStore(null) {
+      @Override
+      public Plan getPlan(String apiKey) {
+        return Plan.PRO;
+      }
+    };
+    return new PriceBroadcaster(store, prices, 32, 60_000, 16, 25_000, 10, 8, 32, 60_000);
+  }
+
+  /** Grupo i: símbolos consecutivos del universo, (inicio, largo) distintos por grupo */
+  private static List<String> groupSymbols(int group) {
+    List<String> out = new ArrayList<>();
+    for (int k = 0; k <= group / UNIVERSE.length; k++) out.add(UNIVERSE[(group + k) % UNIVERSE.length]);
+    return out;
+  }
+
+  private static Map<String, BigDecimal> prices(int round) {
+    Map<String, BigDecimal> out = new LinkedHashMap<>();
+    for (int i = 0; i < UNIVERSE.length; i++) out.put(UNIVERSE[i], BigDecimal.valueOf(1000L * (i + 1) + round, 2));
+    return out;
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+  }
+
+  private static void awaitCount(AtomicInteger counter, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30_000;
+    while (counter.get() < expected) {
+      if (System.currentTimeMillis() > deadline) throw new AssertionError("delivered " + counter.get() + " of " + expected);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void tenThousandSubscribersSerializeOncePerGroup() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    AtomicInteger received = new AtomicInteger();
+    Set<byte[]> distinct = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    for (int i = 0; i < SUBSCRIBERS; i++) {
+      // PRO admite 10 streams por key
+      b.open("key-" + (i / 10), groupSymbols(i % GROUPS), "USD", PriceBroadcaster.Mode.FULL, PriceBroadcaster.Format.JSON,
+        null, new CountingSink(received, distinct));
+    }
+
+    int warmup = 5;
+    int rounds = 20;
+    long sharedBytes = 0;
+    long sharedNanos = 0;
+    for (int r = 0; r < warmup + rounds; r++) {
+      Map<String, Object> payload = Map.of("ts", OffsetDateTime.now().toString(), "fiat", "USD", "source", "stub");
+      distinct.clear();
+      int target = received.get() + SUBSCRIBERS;
+
+      long t0 = System.nanoTime();
+      long a0 = allocatedBytes();
+      b.broadcastPrices("USD", payload, prices(r));
+      long alloc = allocatedBytes() - a0;
+      awaitCount(received, target);
+      long took = System.nanoTime() - t0;
+
+      assertEquals(GROUPS, distinct.size(), "one serialized frame per group");
+      if (r >= warmup) {
+        sharedBytes += alloc;
+        sharedNanos += took;
+      }
+    }
+
+    // referencia: la misma carga serializada por cada suscriptor
+    Gson gson = new Gson();
+    long perSubBytes = 0;
+    long perSubNanos = 0;
+    for (int r = 0; r < warmup + rounds; r++) {
+      Map<String, BigDecimal> prices = prices(r);
+      String ts = OffsetDateTime.now().toString();
+      long t0 = System.nanoTime();
+      long a0 = allocatedBytes();
+      long sink = 0;
+      for (int i = 0; i < SUBSCRIBERS; i++) {
+        Map<String, Object> sel = new LinkedHashMap<>();
+        for (String s : groupSymbols(i % GROUPS)) sel.put(s, prices.get(s));
+        byte[] data = gson.toJson(Map.of("ts", ts, "fiat", "USD", "source", "stub", "prices", sel))
+          .getBytes(StandardCharsets.UTF_8);
+        sink += data.length;
+      }
+      long alloc = allocatedBytes() - a0;
+      long took = System.nanoTime() - t0;
+      assertTrue(sink > 0);
+      if (r >= warmup) {
+        perSubBytes += alloc;
+        perSubNanos += took;
+      }
+    }
+
+    long sharedKb = sharedBytes / rounds / 1024;
+    long perSubKb = perSubBytes / rounds / 1024;
+    System.out.printf("serialize-once subs=%d groups=%d: broadcast alloc=%dKB, fan-out=%.2fms | per-subscriber: alloc=%dKB, serialize=%.2fms%n",
+      SUBSCRIBERS, GROUPS, sharedKb, sharedNanos / rounds / 1e6, perSubKb, perSubNanos / rounds / 1e6);
+
+    // el broadcast solo asigna el encolado por suscriptor; serializar 10k veces asigna mucho más
+    assertTrue(sharedBytes * 3 < perSubBytes, "broadcast alloc " + sharedKb + "KB vs per-subscriber " + perSubKb + "KB");
+  }
+
+  /** Sink que suma los bytes de cada frame de precio */
+  static final class BytesSink implements FrameSink {
+    long bytes;
+    int frames;
+
+    @Override
+    public synchronized void send(String event, String id, byte[] data) {
+      if (!"price".equals(event)) return;
+      bytes += data.length;
+      frames++;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static void awaitFrames(BytesSink sink, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (true) {
+      synchronized (sink) {
+        if (sink.frames >= expected) return;
+      }
+      if (System.currentTimeMillis() > deadline) throw new AssertionError("frames " + sink.frames + " of " + expected);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void compactFormatBytesPerEvent() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    // 25 símbolos (máximo de PRO) con precios de magnitudes muy distintas
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 25; i++) symbols.add("S" + i);
+    Map<PriceBroadcaster.Mode, Map<PriceBroadcaster.Format, BytesSink>> sinks = new LinkedHashMap<>();
+    int k = 0;
+    for (PriceBroadcaster.Mode mode : PriceBroadcaster.Mode.values()) {
+      for (PriceBroadcaster.Format format : PriceBroadcaster.Format.values()) {
+        BytesSink sink = new BytesSink();
+        b.open("bytes-" + k++, symbols, "USD", mode, format, null, sink);
+        sinks.computeIfAbsent(mode, m -> new LinkedHashMap<>()).put(format, sink);
+      }
+    }
+
+    int ticks = 200;
+    Random rnd = new Random(42);
+    double[] base = new double[symbols.size()];
+    for (int i = 0; i < base.length; i++) base[i] = Math.pow(10, i % 7 - 2) * (1 + rnd.nextDouble());
+    for (int t = 1; t <= ticks; t++) {
+      Map<String, BigDecimal> prices = new LinkedHashMap<>();
+      for (int i = 0; i < base.length; i++) {
+        // ~20% de los símbolos se mueve en cada tick
+        if (rnd.nextInt(5) == 0) base[i] *= 1 + (rnd.nextDouble() - 0.5) / 100;
+        prices.put(symbols.get(i), BigDecimal.valueOf(base[i]).setScale(8, RoundingMode.HALF_UP));
+      }
+      b.broadcastPrices("USD", Map.of("ts", OffsetDateTime.now().toString(), "fiat", "USD", "source", "coingecko"), prices);
+      int n = t;
+      // full no conflaciona si cada tick se entrega antes del siguiente
+      for (BytesSink sink : sinks.get(PriceBroadcaster.Mode.FULL).values()) awaitFrames(sink, n);
+    }
+    Thread.sleep(50);
+
+    for (var byMode : sinks.entrySet()) {
+      BytesSink json = byMode.getValue().get(PriceBroadcaster.Format.JSON);
+      BytesSink compact = byMode.getValue().get(PriceBroadcaster.Format.COMPACT);
+      assertEquals(json.frames, compact.frames);
+      long jsonPerEvent = json.bytes / json.frames;
+      long compactPerEvent = compact.bytes / compact.frames;
+      System.out.printf("bytes/event mode=%s symbols=%d: json=%d compact=%d (%.0f%%)%n",
+        byMode.getKey().name().toLowerCase(), symbols.size(), jsonPerEvent, compactPerEvent, 100.0 * compactPerEvent / jsonPerEvent);
+      assertTrue(compactPerEvent * 4 < jsonPerEvent * 3, "compact " + compactPerEvent + "B vs json " + jsonPerEvent + "B");
+    }
+  }
+}
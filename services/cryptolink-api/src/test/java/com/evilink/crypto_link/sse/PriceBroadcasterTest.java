@@ -0,0 +1,365 @@
+package com.evilink.crypto_link.sse;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import com.evilink.crypto_link.security.ApiKeyStore;
+import com.evilink.crypto_link.service.InFlightRegistry;
+import com.evilink.crypto_link.service.PriceCache;
+import com.evilink.crypto_link.service.PriceProviderRegistry;
+import com.evilink.crypto_link.service.PriceService;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceBroadcasterTest {
+
+  /** Sink local: guarda cada frame enviado (con los bytes tal cual) y la hora de envío */
+  static class RecordingSink implements FrameSink {
+    record Sent(String event, String id, byte[] raw, long atMs) {
+      String data() {
+        return new String(raw, StandardCharsets.UTF_8);
+      }
+
+      JsonObject json() {
+        return JsonParser.parseString(data()).getAsJsonObject();
+      }
+    }
+
+    final List<Sent> sent = new CopyOnWriteArrayList<>();
+    volatile boolean closed;
+
+    @Override
+    public void send(String event, String id, byte[] data) throws java.io.IOException {
+      sent.add(new Sent(event, id, data, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    List<Sent> events(String event) {
+      return sent.stream().filter(x -> x.event().equals(event)).toList();
+    }
+  }
+
+  /** Cliente que no lee: cada send se queda colgado hasta release (o hasta que lo interrumpen) */
+  static final class StuckSink extends RecordingSink {
+    final CountDownLatch release = new CountDownLatch(1);
+    volatile boolean interrupted;
+
+    @Override
+    public void send(String event, String id, byte[] data) throws java.io.IOException {
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+        throw new java.io.IOException("interrupted", e);
+      }
+      super.send(event, id, data);
+    }
+  }
+
+  private final PriceCache cache = new PriceCache();
+
+  private PriceService priceService() {
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    return new PriceService(new PriceProviderRegistry(List.of(), metrics, "", 0.95, 50, 5, 60_000, 60_000),
+      cache, new InFlightRegistry(metrics), new InProcessPriceEventBus(), 3_000, 30_000, false);
+  }
+
+  private PriceBroadcaster broadcaster(int maxQueue, long keepAliveMs, int slots, long sendTimeoutMs) {
+    ApiKeyStore store = new ApiKeyStore(null) {
+      @Override
+      public Plan getPlan(String apiKey) {
+        return Plan.PRO;
+      }
+    };
+    return new PriceBroadcaster(store, priceService(), maxQueue, 60_000, 16, keepAliveMs, slots, 8, 4, sendTimeoutMs);
+  }
+
+  private PriceBroadcaster broadcaster() {
+    return broadcaster(32, 25_000, 10, 60_000);
+  }
+
+  private static PriceBroadcaster.Subscription open(PriceBroadcaster b, String key, List<String> symbols,
+                                                     PriceBroadcaster.Mode mode, String lastEventId,
+                                                     FrameSink sink) throws Exception {
+    return b.open(key, symbols, "USD", mode, PriceBroadcaster.Format.JSON, lastEventId, sink);
+  }
+
+  private static void tick(PriceBroadcaster b, Map<String, ?> prices) {
+    b.broadcastPrices("USD", Map.of("ts", OffsetDateTime.now().toString(), "fiat", "USD", "source", "stub"), prices);
+  }
+
+  private static Map<String, BigDecimal> prices(Object... kv) {
+    Map<String, BigDecimal> out = new LinkedHashMap<>();
+    for (int i = 0; i < kv.length; i += 2) out.put((String) kv[i], new BigDecimal(kv[i + 1].toString()));
+    return out;
+  }
+
+  private static void await(BooleanSupplier cond) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (!cond.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) throw new AssertionError("condition not met in time");
+      Thread.sleep(2);
+    }
+  }
+
+  @Test
+  void sameGroupSharesOneSerializedFrame() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    RecordingSink a1 = new RecordingSink();
+    RecordingSink a2 = new RecordingSink();
+    RecordingSink other = new RecordingSink();
+    // mismo set de símbolos en otro orden = mismo grupo
+    open(b, "k1", List.of("BTC", "ETH"), PriceBroadcaster.Mode.FULL, null, a1);
+    open(b, "k2", List.of("eth", "btc"), PriceBroadcaster.Mode.FULL, null, a2);
+    open(b, "k3", List.of("BTC"), PriceBroadcaster.Mode.FULL, null, other);
+
+    tick(b, prices("BTC", "100", "ETH", "10"));
+    await(() -> a1.events("price").size() == 1 && a2.events("price").size() == 1 && other.events("price").size() == 1);
+
+    assertSame(a1.events("price").get(0).raw(), a2.events("price").get(0).raw());
+    assertNotSame(a1.events("price").get(0).raw(), other.events("price").get(0).raw());
+    assertEquals(1, other.events("price").get(0).json().getAsJsonObject("prices").size());
+  }
+
+  @Test
+  void tickOnlyReachesGroupsThatAskForItsSymbols() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    RecordingSink btc = new RecordingSink();
+    RecordingSink sol = new RecordingSink();
+    open(b, "k1", List.of("BTC"), PriceBroadcaster.Mode.FULL, null, btc);
+    open(b, "k2", List.of("SOL"), PriceBroadcaster.Mode.FULL, null, sol);
+
+    tick(b, prices("BTC", "100"));
+    await(() -> btc.events("price").size() == 1);
+    Thread.sleep(50);
+
+    assertEquals(0, sol.events("price").size());
+  }
+
+  @Test
+  void demandIsRefCountedPerSymbol() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    var s1 = open(b, "k1", List.of("BTC", "ETH"), PriceBroadcaster.Mode.FULL, null, new RecordingSink());
+    var s2 = open(b, "k2", List.of("BTC"), PriceBroadcaster.Mode.DELTA, null, new RecordingSink());
+    assertEquals(Set.of("BTC", "ETH"), b.snapshotRequested().get("USD"));
+
+    b.close(s1);
+    assertEquals(Set.of("BTC"), b.snapshotRequested().get("USD"));
+
+    b.close(s2);
+    assertFalse(b.snapshotRequested().containsKey("USD"));
+  }
+
+  @Test
+  void controlQueueOverflowEvictsSlowDeltaConsumer() throws Exception {
+    PriceBroadcaster b = broadcaster(4, 25_000, 10, 60_000);
+    StuckSink slow = new StuckSink();
+    RecordingSink fast = new RecordingSink();
+    open(b, "k1", List.of("BTC"), PriceBroadcaster.Mode.DELTA, null, slow);
+    open(b, "k2", List.of("BTC"), PriceBroadcaster.Mode.DELTA, null, fast);
+    try {
+      // cada tick cambia el precio = un frame con seq que no se puede conflacionar; se espera
+      // al cliente rápido para que solo se llene la cola del lento
+      for (int i = 1; i <= 10; i++) {
+        tick(b, prices("BTC", 100 + i));
+        int n = i;
+        await(() -> fast.events("price").size() == n);
+      }
+
+      await(() -> slow.closed);
+      assertEquals(1, b.evictedTotal());
+      assertTrue(b.droppedTotal() >= 1);
+      assertEquals(1, b.activeConnections());
+      // el otro del grupo no se entera
+      assertFalse(fast.closed);
+    } finally {
+      slow.release.countDown();
+    }
+  }
+
+  @Test
+  void sendStuckPastTimeoutIsInterruptedAndEvicted() throws Exception {
+    PriceBroadcaster b = broadcaster(32, 25_000, 10, 100);
+    StuckSink stuck = new StuckSink();
+    open(b, "k1", List.of("BTC"), PriceBroadcaster.Mode.FULL, null, stuck);
+    try {
+      Thread.sleep(250);   // el hello lleva > send-timeout-ms atorado
+      b.checkStuckSends();
+
+      await(() -> stuck.closed && stuck.interrupted);
+      assertEquals(0, b.activeConnections());
+      assertEquals(1, b.evictedTotal());
+    } finally {
+      stuck.release.countDown();
+    }
+  }
+
+  @Test
+  void deltaSeqIsGaplessAcrossReconnect() throws Exception {
+    cache.put("USD", prices("BTC", "100", "ETH", "10"), 60_000);
+    PriceBroadcaster b = broadcaster();
+    RecordingSink stays = new RecordingSink();
+    RecordingSink first = new RecordingSink();
+    open(b, "k1", List.of("BTC", "ETH"), PriceBroadcaster.Mode.DELTA, null, stays);
+    var sub = open(b, "k2", List.of("BTC", "ETH"), PriceBroadcaster.Mode.DELTA, null, first);
+
+    tick(b, prices("BTC", "101", "ETH", "10"));
+    tick(b, prices("BTC", "101.0", "ETH", "11"));   // 101 == 101.0: solo ETH cambió
+    await(() -> first.events("price").size() == 2);
+    b.close(sub);
+
+    // mientras está desconectado el grupo sigue avanzando
+    tick(b, prices("BTC", "102"));
+    tick(b, prices("ETH", "12"));
+
+    RecordingSink again = new RecordingSink();
+    open(b, "k2", List.of("ETH", "BTC"), PriceBroadcaster.Mode.DELTA, null, again);
+    tick(b, prices("BTC", "103"));
+    tick(b, prices("BTC", "104", "ETH", "13"));
+    await(() -> again.events("price").size() == 2 && stays.events("price").size() == 6);
+
+    JsonObject snap = again.events("snapshot").get(0).json();
+    assertEquals(4, snap.get("seq").getAsLong());
+    assertEquals(0, new BigDecimal("102").compareTo(snap.getAsJsonObject("prices").get("BTC").getAsBigDecimal()));
+    assertEquals(0, new BigDecimal("12").compareTo(snap.getAsJsonObject("prices").get("ETH").getAsBigDecimal()));
+
+    long expected = snap.get("seq").getAsLong();
+    for (RecordingSink.Sent p : again.events("price")) assertEquals(++expected, p.json().get("seq").getAsLong());
+
+    // quien se quedó vio la secuencia completa, sin huecos, desde su snapshot
+    long seq = stays.events("snapshot").get(0).json().get("seq").getAsLong();
+    for (RecordingSink.Sent p : stays.events("price")) assertEquals(++seq, p.json().get("seq").getAsLong());
+  }
+
+  @Test
+  void reconnectWithLastEventIdReplaysMissedTicks() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    RecordingSink live = new RecordingSink();
+    open(b, "k1", List.of("BTC"), PriceBroadcaster.Mode.FULL, null, live);
+    for (int i = 1; i <= 5; i++) {
+      tick(b, prices("BTC", 100 + i));
+      int n = i;
+      await(() -> live.events("price").size() == n);   // sin conflación: uno por uno
+    }
+    List<RecordingSink.Sent> ticks = live.events("price");
+
+    RecordingSink resumed = new RecordingSink();
+    open(b, "k2", List.of("BTC"), PriceBroadcaster.Mode.FULL, ticks.get(1).id(), resumed);
+    await(() -> resumed.events("price").size() == 3);
+    Thread.sleep(50);
+
+    List<RecordingSink.Sent> replayed = resumed.events("price");
+    assertEquals(3, replayed.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(ticks.get(i + 2).id(), replayed.get(i).id());
+      assertEquals(ticks.get(i + 2).data(), replayed.get(i).data());
+    }
+    assertEquals("hello", resumed.sent.get(0).event());
+  }
+
+  @Test
+  void unknownEpochGetsLatestTickOnly() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    for (int i = 1; i <= 3; i++) tick(b, prices("BTC", 100 + i));
+
+    RecordingSink resumed = new RecordingSink();
+    open(b, "k1", List.of("BTC"), PriceBroadcaster.Mode.FULL, "zzz-2", resumed);
+    await(() -> resumed.events("price").size() == 1);
+    Thread.sleep(50);
+
+    assertEquals(1, resumed.events("price").size());
+    assertEquals(0, new BigDecimal("103").compareTo(
+      resumed.events("price").get(0).json().getAsJsonObject("prices").get("BTC").getAsBigDecimal()));
+  }
+
+  @Test
+  void compactScaledValuesStayExactOrFallBackToDecimalString() throws Exception {
+    PriceBroadcaster b = broadcaster();
+    RecordingSink full = new RecordingSink();
+    RecordingSink delta = new RecordingSink();
+    List<String> symbols = List.of("AAA", "BBB", "CCC", "DDD");
+    b.open("k1", symbols, "USD", PriceBroadcaster.Mode.FULL, PriceBroadcaster.Format.COMPACT, null, full);
+    b.open("k2", symbols, "USD", PriceBroadcaster.Mode.DELTA, PriceBroadcaster.Format.COMPACT, null, delta);
+
+    // scale 8: 2^53 / 10^8 = 90071992.54740992 es el último que cabe exacto
+    tick(b, prices("AAA", "12345.678", "BBB", "90071992.54740992", "CCC", "90071992.54740993", "DDD", "-1e15"));
+    await(() -> full.events("price").size() == 1 && delta.events("price").size() == 1);
+
+    var p = full.events("price").get(0).json().getAsJsonArray("p");
+    assertEquals(1234567800000L, p.get(0).getAsLong());
+    assertEquals(1L << 53, p.get(1).getAsLong());
+    assertEquals("90071992.54740993", p.get(2).getAsString());
+    assertTrue(p.get(2).getAsJsonPrimitive().isString());
+    assertEquals("-1000000000000000", p.get(3).getAsString());
+    assertTrue(p.get(3).getAsJsonPrimitive().isString());
+
+    // pares [i, valor] del delta con la misma regla
+    var c = delta.events("price").get(0).json().getAsJsonArray("c");
+    assertEquals(8, c.size());
+    assertEquals(1L << 53, c.get(3).getAsLong());
+    assertTrue(c.get(5).getAsJsonPrimitive().isString());
+  }
+
+  @Test
+  void keepAliveGapNeverExceedsKeepAliveMs() throws Exception {
+    long keepAliveMs = 600;
+    int slots = 6;
+    long tickMs = keepAliveMs / slots;
+    PriceBroadcaster b = broadcaster(32, keepAliveMs, slots, 60_000);
+
+    // altas repartidas dentro de un tick y entre ticks: cubre quien queda justo debajo del umbral
+    List<RecordingSink> sinks = new ArrayList<>();
+    long start = System.currentTimeMillis();
+    long end = start + 8 * keepAliveMs;
+    long nextTick = (start / tickMs + 1) * tickMs;
+    int opened = 0;
+    while (System.currentTimeMillis() < end) {
+      long now = System.currentTimeMillis();
+      if (opened < 24 && now >= start + opened * 37L) {
+        RecordingSink sink = new RecordingSink();
+        b.open("key-" + opened, List.of("BTC"), "USD", PriceBroadcaster.Mode.FULL, PriceBroadcaster.Format.JSON, null, sink);
+        sinks.add(sink);
+        opened++;
+      }
+      if (now >= nextTick) {
+        // como fixedRate: un tick por cada tickMs
+        b.keepAliveTick();
+        nextTick += tickMs;
+      }
+      Thread.sleep(1);
+    }
+
+    long worst = 0;
+    for (RecordingSink sink : sinks) {
+      List<RecordingSink.Sent> sent = sink.sent;
+      for (int i = 1; i < sent.size(); i++) worst = Math.max(worst, sent.get(i).atMs() - sent.get(i - 1).atMs());
+      worst = Math.max(worst, end - sent.get(sent.size() - 1).atMs());
+    }
+    // margen para el salto al hilo de envío y la granularidad del sleep
+    assertTrue(worst <= keepAliveMs + 40, "worst idle gap " + worst + "ms > keepalive " + keepAliveMs + "ms");
+  }
+}
@@ -0,0 +1,134 @@
+package com.evilink.crypto_link.ws;
+
+import com.evilink.crypto_link.bus.InProcessPriceEventBus;
+import com.evilink.crypto_link.metrics.ApiMetrics;
+import com.evilink.crypto_link.security.ApiKeyFilter;
+import com.evilink.crypto_link.security.ApiKeyStore;
+import com.evilink.crypto_link.service.FiatService;
+import com.evilink.crypto_link.service.InFlightRegistry;
+import com.evilink.crypto_link.service.PriceCache;
+import com.evilink.crypto_link.service.PriceProviderRegistry;
+import com.evilink.crypto_link.service.PriceService;
+import com.evilink.crypto_link.service.SymbolRegistry;
+import com.evilink.crypto_link.service.SymbolService;
+import com.evilink.crypto_link.sse.PriceBroadcaster;
+import com.evilink.crypto_link.validation.MarketValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceWebSocketHandlerTest {
+
+  private static final List<String> SYMBOLS = List.of("BTC", "ETH", "SOL", "ADA", "XRP", "DOT", "LTC", "BNB");
+
+  private static PriceBroadcaster broadcaster() {
+    ApiKeyStore store = new ApiKeyStore(null) {
+      @Override
+      public Plan getPlan(String apiKey) {
+        return Plan.PRO;
+      }
+    };
+    ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+    PriceService prices = new PriceService(
+      new PriceProviderRegistry(List.of(), metrics, "", 0.95, 50, 5, 60_000, 60_000),
+      new PriceCache(), new InFlightRegistry(metrics), new InProcessPriceEventBus(), 3_000, 30_000, false);
+    return new PriceBroadcaster(store, prices, 1000, 60_000, 16, 25_000, 10, 8, 4, 60_000);
+  }
+
+  private static MarketValidator validator() {
+    SymbolRegistry registry = new SymbolRegistry(new SymbolService(null) {
+      @Override
+      public List<SymbolRow> listAll() {
+        return SYMBOLS.stream().map(s -> new SymbolRow(s, s.toLowerCase(), true, Instant.EPOCH)).toList();
+      }
+    }, 600_000);
+    registry.refresh();
+    FiatService fiats = new FiatService(null) {
+      @Override
+      public Set<String> listActiveSet() {
+        return Set.of("USD");
+      }
+    };
+    return new MarketValidator(registry, fiats);
+  }
+
+  /** Sesión real de mentira: el primer envío se queda atorado hasta release (cliente que no lee) */
+  private static final class StuckSession {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger sends = new AtomicInteger();
+    final AtomicReference<CloseStatus> closed = new AtomicReference<>();
+    final Map<String, Object> attrs = new HashMap<>(Map.of(
+      ApiKeyFilter.REQ_ATTR_API_KEY, "key-1",
+      ApiKeyFilter.REQ_ATTR_PLAN, ApiKeyStore.Plan.PRO));
+
+    final WebSocketSession session = (WebSocketSession) Proxy.newProxyInstance(
+      WebSocketSession.class.getClassLoader(), new Class<?>[] { WebSocketSession.class }, (proxy, m, args) -> {
+        switch (m.getName()) {
+          case "getId": return "s1";
+          case "getAttributes": return attrs;
+          case "isOpen": return closed.get() == null;
+          case "sendMessage":
+            if (sends.incrementAndGet() == 1) release.await(30, TimeUnit.SECONDS);
+            return null;
+          case "close":
+            closed.compareAndSet(null, args == null ? CloseStatus.NORMAL : (CloseStatus) args[0]);
+            return null;
+          case "hashCode": return System.identityHashCode(proxy);
+          case "equals": return proxy == args[0];
+          case "toString": return "StuckSession";
+          default: return null;
+        }
+      });
+  }
+
+  private static TextMessage subscribe(String id) {
+    return new TextMessage("{\"op\":\"subscribe\",\"id\":\"" + id + "\",\"symbols\":\"" + String.join(",", SYMBOLS) + "\",\"fiat\":\"USD\"}");
+  }
+
+  @Test
+  void bufferOverflowClosesSessionAndDropsEveryBasket() throws Exception {
+    PriceBroadcaster broadcaster = broadcaster();
+    PriceWebSocketHandler handler = new PriceWebSocketHandler(broadcaster, validator(), 60_000, 2048);
+    StuckSession s = new StuckSession();
+    try {
+      handler.afterConnectionEstablished(s.session);
+      handler.handleTextMessage(s.session, subscribe("b1"));
+      handler.handleTextMessage(s.session, subscribe("b2"));
+      assertEquals(2, broadcaster.activeConnections());
+
+      // el primer envío se atoró; lo demás se acumula en el buffer del decorator hasta rebasarlo
+      long deadline = System.currentTimeMillis() + 10_000;
+      for (int i = 0; s.closed.get() == null && System.currentTimeMillis() < deadline; i++) {
+        Map<String, Object> prices = new LinkedHashMap<>();
+        for (String sym : SYMBOLS) prices.put(sym, new BigDecimal("12345.6789").add(BigDecimal.valueOf(i)));
+        broadcaster.broadcastPrices("USD", Map.of("ts", OffsetDateTime.now().toString(), "fiat", "USD", "source", "stub"), prices);
+        Thread.sleep(5);
+      }
+
+      assertEquals(CloseStatus.SESSION_NOT_RELIABLE, s.closed.get());
+      // ningún canasto queda zombi contando contra el plan
+      while (broadcaster.activeConnections() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+      assertEquals(0, broadcaster.activeConnections());
+    } finally {
+      s.release.countDown();
+    }
+  }
+}